@@ -0,0 +1,85 @@
+package com.railsreactor.util.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producers offering and consumers polling the same queue without blocking.
+ * The numbers of producer and consumer threads can be changed with {@code -tg producers,consumers}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class ConcurrentQueueBenchmark {
+
+    @Param({"CONCURRENT_MOST_RECENTLY_INSERTED", "MOST_RECENTLY_INSERTED_BLOCKING",
+            "ARRAY_BLOCKING_QUEUE", "CONCURRENT_LINKED_QUEUE"})
+    QueueImplementation implementation;
+
+    @Param({"1024", "65536"})
+    int capacity;
+
+    @Param({"0.5", "1.0"})
+    double fillRatio;
+
+    private Queue<Integer> queue;
+    private Integer[] elements;
+
+    /**
+     * Bounds the ConcurrentLinkedQueue baseline, whose size() walks the whole queue.
+     */
+    private final AtomicInteger unboundedQueueSize = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class ProducerCursor {
+        int next;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        elements = Elements.create();
+        int elementCount = (int) (capacity * fillRatio);
+        queue = implementation.createAndFill(capacity, elementCount, elements);
+        unboundedQueueSize.set(elementCount);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(2)
+    public boolean producer(ProducerCursor cursor) {
+        Integer element = elements[cursor.next++ & Elements.MASK];
+
+        switch (implementation) {
+            case ARRAY_BLOCKING_QUEUE:
+                while (!queue.offer(element))
+                    queue.poll();
+                return true;
+
+            case CONCURRENT_LINKED_QUEUE:
+                queue.offer(element);
+                if (unboundedQueueSize.incrementAndGet() > capacity && queue.poll() != null)
+                    unboundedQueueSize.decrementAndGet();
+                return true;
+
+            default:
+                return queue.offer(element);
+        }
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(2)
+    public Integer consumer() {
+        Integer element = queue.poll();
+        if (element != null && implementation == QueueImplementation.CONCURRENT_LINKED_QUEUE)
+            unboundedQueueSize.decrementAndGet();
+
+        return element;
+    }
+}
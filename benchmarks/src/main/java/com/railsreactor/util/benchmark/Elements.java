@@ -0,0 +1,20 @@
+package com.railsreactor.util.benchmark;
+
+/**
+ * Pre-boxed elements, so the benchmarks measure the queues and not Integer.valueOf().
+ */
+final class Elements {
+    static final int COUNT = 1 << 16;
+    static final int MASK = COUNT - 1;
+
+    private Elements() {
+    }
+
+    static Integer[] create() {
+        Integer[] result = new Integer[COUNT];
+        for (int i = 0; i < COUNT; i++)
+            result[i] = i + 1_000_000;
+
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package com.railsreactor.util.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producers putting elements and consumers waiting for them on an initially empty blocking queue.
+ * The numbers of producer and consumer threads can be changed with {@code -tg producers,consumers}.
+ * <p>
+ * Consumers wait with a short timed poll instead of take(), so they notice the end of an iteration
+ * when no producer is running any more.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class HandoffBenchmark {
+
+    @Param({"MOST_RECENTLY_INSERTED_BLOCKING", "ARRAY_BLOCKING_QUEUE"})
+    QueueImplementation implementation;
+
+    @Param({"1024"})
+    int capacity;
+
+    private BlockingQueue<Integer> queue;
+    private Integer[] elements;
+
+    @State(Scope.Thread)
+    public static class ProducerCursor {
+        int next;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        elements = Elements.create();
+        queue = (BlockingQueue<Integer>) implementation.create(capacity);
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(1)
+    public void put(ProducerCursor cursor, Control control) throws InterruptedException {
+        Integer element = elements[cursor.next++ & Elements.MASK];
+        while (!queue.offer(element, 1, TimeUnit.MILLISECONDS))
+            if (control.stopMeasurement)
+                return;
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(1)
+    public Integer take(Control control) throws InterruptedException {
+        Integer element;
+        while ((element = queue.poll(1, TimeUnit.MILLISECONDS)) == null)
+            if (control.stopMeasurement)
+                return null;
+
+        return element;
+    }
+}
@@ -0,0 +1,80 @@
+package com.railsreactor.util.benchmark;
+
+import com.railsreactor.util.MostRecentlyInsertedQueue;
+import com.railsreactor.util.concurrent.ConcurrentMostRecentlyInsertedQueue;
+import com.railsreactor.util.concurrent.MostRecentlyInsertedBlockingQueue;
+import com.railsreactor.util.concurrent.SingleProducerSingleConsumerMostRecentlyInsertedQueue;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The queues under benchmark. The JDK baselines do not evict on their own, so the benchmarks
+ * emulate the recent-N behavior on them the cheapest way each one allows.
+ */
+public enum QueueImplementation {
+    MOST_RECENTLY_INSERTED {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new MostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    CONCURRENT_MOST_RECENTLY_INSERTED {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new ConcurrentMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    MOST_RECENTLY_INSERTED_BLOCKING {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new MostRecentlyInsertedBlockingQueue<>(capacity);
+        }
+    },
+    SINGLE_PRODUCER_SINGLE_CONSUMER {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new SingleProducerSingleConsumerMostRecentlyInsertedQueue<>(capacity);
+        }
+    },
+    ARRAY_BLOCKING_QUEUE {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new ArrayBlockingQueue<>(capacity);
+        }
+    },
+    ARRAY_DEQUE {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new ArrayDeque<>(capacity);
+        }
+    },
+    CONCURRENT_LINKED_QUEUE {
+        @Override
+        Queue<Integer> create(int capacity) {
+            return new ConcurrentLinkedQueue<>();
+        }
+    };
+
+    abstract Queue<Integer> create(int capacity);
+
+    /**
+     * @return {@code true} if the queue evicts its oldest element on its own when it is full
+     */
+    boolean evictsOldest() {
+        return this == MOST_RECENTLY_INSERTED
+                || this == CONCURRENT_MOST_RECENTLY_INSERTED
+                || this == MOST_RECENTLY_INSERTED_BLOCKING
+                || this == SINGLE_PRODUCER_SINGLE_CONSUMER;
+    }
+
+    Queue<Integer> createAndFill(int capacity, int elementCount, Integer[] elements) {
+        Queue<Integer> queue = create(capacity);
+        for (int i = 0; i < elementCount; i++)
+            queue.offer(elements[i % elements.length]);
+
+        return queue;
+    }
+}
@@ -0,0 +1,48 @@
+package com.railsreactor.util.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One producer offering and one consumer polling without blocking.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class SingleProducerSingleConsumerBenchmark {
+
+    @Param({"SINGLE_PRODUCER_SINGLE_CONSUMER", "CONCURRENT_MOST_RECENTLY_INSERTED"})
+    QueueImplementation implementation;
+
+    @Param({"1024", "65536"})
+    int capacity;
+
+    private Queue<Integer> queue;
+    private Integer[] elements;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        elements = Elements.create();
+        queue = implementation.create(capacity);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(1)
+    public boolean producer() {
+        return queue.offer(elements[next++ & Elements.MASK]);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(1)
+    public Integer consumer() {
+        return queue.poll();
+    }
+}
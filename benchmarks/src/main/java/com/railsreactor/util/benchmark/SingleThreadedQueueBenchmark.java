@@ -0,0 +1,79 @@
+package com.railsreactor.util.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of a single thread on a queue filled to {@code capacity * fillRatio} elements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SingleThreadedQueueBenchmark {
+
+    @Param({"MOST_RECENTLY_INSERTED", "CONCURRENT_MOST_RECENTLY_INSERTED", "MOST_RECENTLY_INSERTED_BLOCKING",
+            "SINGLE_PRODUCER_SINGLE_CONSUMER", "ARRAY_BLOCKING_QUEUE", "ARRAY_DEQUE", "CONCURRENT_LINKED_QUEUE"})
+    QueueImplementation implementation;
+
+    @Param({"1024", "65536"})
+    int capacity;
+
+    @Param({"0.5", "1.0"})
+    double fillRatio;
+
+    private Queue<Integer> queue;
+    private Queue<Integer> fullQueue;
+    private Integer[] elements;
+    private Integer absentElement;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        elements = Elements.create();
+        absentElement = -1;
+        queue = implementation.createAndFill(capacity, (int) (capacity * fillRatio), elements);
+        fullQueue = implementation.createAndFill(capacity, capacity, elements);
+    }
+
+    private Integer nextElement() {
+        return elements[next++ & Elements.MASK];
+    }
+
+    /**
+     * Offers to a full queue, so every offer evicts the oldest element.
+     * The baselines have to poll it out first.
+     */
+    @Benchmark
+    public boolean offerAtFullCapacity() {
+        if (!implementation.evictsOldest())
+            fullQueue.poll();
+
+        return fullQueue.offer(nextElement());
+    }
+
+    @Benchmark
+    public Integer offerPoll() {
+        queue.offer(nextElement());
+        return queue.poll();
+    }
+
+    /**
+     * Looks for an element that is not in the queue, which is the common case of duplicate suppression.
+     */
+    @Benchmark
+    public boolean containsAbsent() {
+        return queue.contains(absentElement);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Integer element : queue)
+            blackhole.consume(element);
+    }
+}
@@ -0,0 +1,47 @@
+package com.railsreactor.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Releases the native memory of direct and mapped buffers without waiting for the garbage collector.
+ */
+final class DirectBuffers {
+
+    private DirectBuffers() {
+    }
+
+    /**
+     * Frees the memory of {@code buffer}. The buffer must not be accessed afterwards.
+     * If the running JVM gives no way to do it, the memory is left to the garbage collector.
+     */
+    static void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect())
+            return;
+
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // fall back to the Java 8 way below
+        }
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // the garbage collector will free the memory
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.railsreactor.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code double} specialization of {@link MostRecentlyInsertedQueue} that stores
+ * its elements in a primitive circular array and never boxes them.
+ */
+public class DoubleMostRecentlyInsertedQueue implements Serializable {
+    private static final long serialVersionUID = 778;
+    private final int CAPACITY;
+
+    /**
+     * The storage, written by {@code writeObject} as the live elements only.
+     */
+    transient private double[] queue;
+
+    /**
+     * The index of the head (the oldest) element in the circular array {@code queue}.
+     */
+    transient private int head = 0;
+
+    /**
+     * The current number of elements in this queue.
+     */
+    transient private int size = 0;
+
+    /**
+     * The number of times this queue has been <i>structurally modified</i>.
+     * Used by the iterator to throw ConcurrentModificationException.
+     */
+    transient private int modificationCount;
+
+    public DoubleMostRecentlyInsertedQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.CAPACITY = capacity;
+        this.queue = new double[CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    public void offerDouble(double element) {
+        if (size == CAPACITY) {
+            queue[head] = element;
+            head = nextIndex(head);
+
+        } else {
+            queue[physicalIndex(size)] = element;
+            size++;
+        }
+
+        modificationCount++;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public double pollDouble() {
+        checkNotEmpty();
+
+        return pollHead();
+    }
+
+    public double pollDouble(double valueIfEmpty) {
+        return (size == 0) ? valueIfEmpty : pollHead();
+    }
+
+    private double pollHead() {
+        double result = queue[head];
+        head = nextIndex(head);
+        size--;
+        modificationCount++;
+
+        return result;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public double peekDouble() {
+        checkNotEmpty();
+
+        return queue[head];
+    }
+
+    public double peekDouble(double valueIfEmpty) {
+        return (size == 0) ? valueIfEmpty : queue[head];
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0)
+            throw new NoSuchElementException("The queue is empty.");
+    }
+
+    public void clear() {
+        modificationCount++;
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Compares elements the way {@link Double#equals(Object)} does, so {@code NaN} is found
+     * and {@code 0.0} and {@code -0.0} are different elements.
+     */
+    public boolean contains(double element) {
+        for (int i = 0; i < size; i++)
+            if (Double.compare(queue[physicalIndex(i)], element) == 0)
+                return true;
+
+        return false;
+    }
+
+    public double[] toArray() {
+        double[] result = new double[size];
+        int firstPartLength = Math.min(size, CAPACITY - head);
+        System.arraycopy(queue, head, result, 0, firstPartLength);
+        System.arraycopy(queue, 0, result, firstPartLength, size - firstPartLength);
+
+        return result;
+    }
+
+    private int nextIndex(int index) {
+        return (index == CAPACITY - 1) ? 0 : index + 1;
+    }
+
+    private int physicalIndex(int logicalIndex) {
+        return (logicalIndex < CAPACITY - head) ? head + logicalIndex : logicalIndex - (CAPACITY - head);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++)
+            out.writeDouble(queue[physicalIndex(i)]);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        if (CAPACITY <= 0)
+            throw new InvalidObjectException("Capacity must be positive.");
+        int count = in.readInt();
+        if (count < 0 || count > CAPACITY)
+            throw new InvalidObjectException("Size must be between 0 and the capacity.");
+
+        queue = new double[CAPACITY];
+        for (int i = 0; i < count; i++)
+            queue[i] = in.readDouble();
+        size = count;
+    }
+
+    public PrimitiveIterator.OfDouble iterator() {
+        return new ThisIterator();
+    }
+
+    public DoubleStream stream() {
+        return StreamSupport.doubleStream(
+                Spliterators.spliterator(iterator(), size, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                result.append(", ");
+            result.append(queue[physicalIndex(i)]);
+        }
+
+        return result.append(']').toString();
+    }
+
+    private final class ThisIterator implements PrimitiveIterator.OfDouble {
+        private final int expectedModificationCount = modificationCount;
+        private int currentIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            return (currentIndex < size);
+        }
+
+        @Override
+        public double nextDouble() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            return queue[physicalIndex(currentIndex++)];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.railsreactor.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts elements to and from variable-size binary records for queue snapshots.
+ * <p>
+ * {@code read} must consume exactly the bytes {@code write} produced for the element.
+ */
+public interface ElementCodec<E> {
+
+    void write(E element, DataOutput out) throws IOException;
+
+    E read(DataInput in) throws IOException;
+}
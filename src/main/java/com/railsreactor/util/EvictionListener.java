@@ -0,0 +1,17 @@
+package com.railsreactor.util;
+
+/**
+ * Receives the elements a queue discards when a new element is offered while it is full.
+ * <p>
+ * The listener is called by the thread that offered the new element, after the queue
+ * has been updated. Elements taken out by poll, remove or clear are not reported.
+ * An exception thrown by the listener is propagated to the caller of offer.
+ * <p>
+ * The time-windowed queues also report the elements that expired, from whichever call
+ * discovered the expiry.
+ */
+@FunctionalInterface
+public interface EvictionListener<E> {
+
+    void onEviction(E element);
+}
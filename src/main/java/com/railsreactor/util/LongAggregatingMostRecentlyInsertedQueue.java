@@ -0,0 +1,258 @@
+package com.railsreactor.util;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.stream.LongStream;
+
+/**
+ * A {@link LongMostRecentlyInsertedQueue} that keeps the sum, mean, variance, minimum and maximum of
+ * its elements up to date on every offer, eviction and poll, so reading them costs O(1) instead of
+ * a pass over the window.
+ * <p>
+ * The sum is exact (it overflows like {@code long} addition) and the mean is derived from it.
+ * The variance is updated with Welford's method, which may accumulate rounding errors over many
+ * updates; it is reset to exactly zero whenever the window becomes empty. The minimum and the maximum
+ * are the fronts of two monotonic deques of the window's elements, each updated in amortized O(1).
+ * <p>
+ * This class is not thread-safe, see
+ * {@link com.railsreactor.util.concurrent.ConcurrentLongAggregatingMostRecentlyInsertedQueue}.
+ */
+public class LongAggregatingMostRecentlyInsertedQueue {
+    private final LongMostRecentlyInsertedQueue window;
+    private final MonotonicDeque minimums;
+    private final MonotonicDeque maximums;
+
+    /**
+     * The position of the next offered element. The position of the head is {@code offeredCount - count}.
+     */
+    private long offeredCount;
+    private int count;
+    private long sum;
+
+    /**
+     * The sum of the squared deviations of the elements from their mean.
+     */
+    private double squaredDeviationSum;
+
+    public LongAggregatingMostRecentlyInsertedQueue(int capacity) {
+        this.window = new LongMostRecentlyInsertedQueue(capacity);
+        this.minimums = new MonotonicDeque(capacity, true);
+        this.maximums = new MonotonicDeque(capacity, false);
+    }
+
+    public int size() {
+        return window.size();
+    }
+
+    public boolean isEmpty() {
+        return window.isEmpty();
+    }
+
+    public int capacity() {
+        return window.capacity();
+    }
+
+    public void offerLong(long element) {
+        if (count == window.capacity())
+            removeHead(window.peekLong());
+
+        window.offerLong(element);
+        addTail(element);
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long pollLong() {
+        long result = window.pollLong();
+        removeHead(result);
+
+        return result;
+    }
+
+    public long pollLong(long valueIfEmpty) {
+        return isEmpty() ? valueIfEmpty : pollLong();
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long peekLong() {
+        return window.peekLong();
+    }
+
+    public long peekLong(long valueIfEmpty) {
+        return window.peekLong(valueIfEmpty);
+    }
+
+    public void clear() {
+        window.clear();
+        minimums.clear();
+        maximums.clear();
+        count = 0;
+        sum = 0;
+        squaredDeviationSum = 0;
+    }
+
+    private void addTail(long element) {
+        double oldMean = (count == 0) ? 0 : (double) sum / count;
+        count++;
+        sum += element;
+        double newMean = (double) sum / count;
+        squaredDeviationSum += (element - oldMean) * (element - newMean);
+
+        minimums.addLast(offeredCount, element);
+        maximums.addLast(offeredCount, element);
+        offeredCount++;
+    }
+
+    private void removeHead(long element) {
+        long headPosition = offeredCount - count;
+        minimums.removeFirstIfAt(headPosition);
+        maximums.removeFirstIfAt(headPosition);
+
+        double oldMean = (double) sum / count;
+        count--;
+        sum -= element;
+
+        if (count == 0) {
+            squaredDeviationSum = 0;
+        } else {
+            double newMean = (double) sum / count;
+            squaredDeviationSum = Math.max(0, squaredDeviationSum - (element - newMean) * (element - oldMean));
+        }
+    }
+
+    /**
+     * @return the sum of the elements, which overflows like {@code long} addition
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return the arithmetic mean of the elements, or {@code NaN} if this queue is empty
+     */
+    public double mean() {
+        return (count == 0) ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @return the population variance of the elements, or {@code NaN} if this queue is empty
+     */
+    public double variance() {
+        return (count == 0) ? Double.NaN : squaredDeviationSum / count;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long min() {
+        checkNotEmpty();
+
+        return minimums.first();
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long max() {
+        checkNotEmpty();
+
+        return maximums.first();
+    }
+
+    private void checkNotEmpty() {
+        if (count == 0)
+            throw new NoSuchElementException("The queue is empty.");
+    }
+
+    /**
+     * @return all aggregates at once. Never throws, even if the fields are read
+     * without synchronization while another thread modifies this queue.
+     */
+    public LongWindowStatistics statistics() {
+        return new LongWindowStatistics(count, sum, minimums.firstOr(Long.MAX_VALUE),
+                maximums.firstOr(Long.MIN_VALUE), squaredDeviationSum / Math.max(count, 1));
+    }
+
+    public boolean contains(long element) {
+        return window.contains(element);
+    }
+
+    public long[] toArray() {
+        return window.toArray();
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return window.iterator();
+    }
+
+    public LongStream stream() {
+        return window.stream();
+    }
+
+    @Override
+    public String toString() {
+        return window.toString();
+    }
+
+    /**
+     * A ring of (position, value) pairs whose values are increasing (for the minimum) or
+     * decreasing (for the maximum) from the first to the last. An added element drops all
+     * the elements before it that can no longer be the minimum or the maximum of the window.
+     */
+    private static final class MonotonicDeque {
+        private final long[] positions;
+        private final long[] values;
+        private final boolean minimum;
+        private int head;
+        private int size;
+
+        private MonotonicDeque(int capacity, boolean minimum) {
+            this.positions = new long[capacity];
+            this.values = new long[capacity];
+            this.minimum = minimum;
+        }
+
+        private void addLast(long position, long value) {
+            while (size > 0 && supersedes(value, values[physicalIndex(size - 1)]))
+                size--;
+
+            int index = physicalIndex(size);
+            positions[index] = position;
+            values[index] = value;
+            size++;
+        }
+
+        private boolean supersedes(long value, long lastValue) {
+            return minimum ? value <= lastValue : value >= lastValue;
+        }
+
+        private void removeFirstIfAt(long position) {
+            if (size > 0 && positions[head] == position) {
+                head = (head == positions.length - 1) ? 0 : head + 1;
+                size--;
+            }
+        }
+
+        private long first() {
+            return values[head];
+        }
+
+        private long firstOr(long valueIfEmpty) {
+            return (size == 0) ? valueIfEmpty : values[head];
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private int physicalIndex(int logicalIndex) {
+            int index = head + logicalIndex;
+
+            return (index < positions.length) ? index : index - positions.length;
+        }
+    }
+}
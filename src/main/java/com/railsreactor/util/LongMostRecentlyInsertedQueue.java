@@ -0,0 +1,213 @@
+package com.railsreactor.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@code long} specialization of {@link MostRecentlyInsertedQueue} that stores
+ * its elements in a primitive circular array and never boxes them.
+ */
+public class LongMostRecentlyInsertedQueue implements Serializable {
+    private static final long serialVersionUID = 778;
+    private final int CAPACITY;
+
+    /**
+     * The storage, written by {@code writeObject} as the live elements only.
+     */
+    transient private long[] queue;
+
+    /**
+     * The index of the head (the oldest) element in the circular array {@code queue}.
+     */
+    transient private int head = 0;
+
+    /**
+     * The current number of elements in this queue.
+     */
+    transient private int size = 0;
+
+    /**
+     * The number of times this queue has been <i>structurally modified</i>.
+     * Used by the iterator to throw ConcurrentModificationException.
+     */
+    transient private int modificationCount;
+
+    public LongMostRecentlyInsertedQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.CAPACITY = capacity;
+        this.queue = new long[CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    public void offerLong(long element) {
+        if (size == CAPACITY) {
+            queue[head] = element;
+            head = nextIndex(head);
+
+        } else {
+            queue[physicalIndex(size)] = element;
+            size++;
+        }
+
+        modificationCount++;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long pollLong() {
+        checkNotEmpty();
+
+        return pollHead();
+    }
+
+    public long pollLong(long valueIfEmpty) {
+        return (size == 0) ? valueIfEmpty : pollHead();
+    }
+
+    private long pollHead() {
+        long result = queue[head];
+        head = nextIndex(head);
+        size--;
+        modificationCount++;
+
+        return result;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long peekLong() {
+        checkNotEmpty();
+
+        return queue[head];
+    }
+
+    public long peekLong(long valueIfEmpty) {
+        return (size == 0) ? valueIfEmpty : queue[head];
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0)
+            throw new NoSuchElementException("The queue is empty.");
+    }
+
+    public void clear() {
+        modificationCount++;
+        head = 0;
+        size = 0;
+    }
+
+    public boolean contains(long element) {
+        for (int i = 0; i < size; i++)
+            if (queue[physicalIndex(i)] == element)
+                return true;
+
+        return false;
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int firstPartLength = Math.min(size, CAPACITY - head);
+        System.arraycopy(queue, head, result, 0, firstPartLength);
+        System.arraycopy(queue, 0, result, firstPartLength, size - firstPartLength);
+
+        return result;
+    }
+
+    private int nextIndex(int index) {
+        return (index == CAPACITY - 1) ? 0 : index + 1;
+    }
+
+    private int physicalIndex(int logicalIndex) {
+        return (logicalIndex < CAPACITY - head) ? head + logicalIndex : logicalIndex - (CAPACITY - head);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++)
+            out.writeLong(queue[physicalIndex(i)]);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        if (CAPACITY <= 0)
+            throw new InvalidObjectException("Capacity must be positive.");
+        int count = in.readInt();
+        if (count < 0 || count > CAPACITY)
+            throw new InvalidObjectException("Size must be between 0 and the capacity.");
+
+        queue = new long[CAPACITY];
+        for (int i = 0; i < count; i++)
+            queue[i] = in.readLong();
+        size = count;
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new ThisIterator();
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(
+                Spliterators.spliterator(iterator(), size, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                result.append(", ");
+            result.append(queue[physicalIndex(i)]);
+        }
+
+        return result.append(']').toString();
+    }
+
+    private final class ThisIterator implements PrimitiveIterator.OfLong {
+        private final int expectedModificationCount = modificationCount;
+        private int currentIndex = 0;
+
+        @Override
+        public boolean hasNext() {
+            return (currentIndex < size);
+        }
+
+        @Override
+        public long nextLong() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            return queue[physicalIndex(currentIndex++)];
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.railsreactor.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable snapshot of the aggregates of a window of {@code long} elements.
+ */
+public final class LongWindowStatistics {
+    private final int count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    private final double variance;
+
+    LongWindowStatistics(int count, long sum, long min, long max, double variance) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.variance = variance;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the elements, which overflows like {@code long} addition
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return the arithmetic mean of the elements, or {@code NaN} if there are none
+     */
+    public double mean() {
+        return (count == 0) ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @return the population variance of the elements, or {@code NaN} if there are none
+     */
+    public double variance() {
+        return (count == 0) ? Double.NaN : variance;
+    }
+
+    /**
+     * @throws NoSuchElementException if there are no elements
+     */
+    public long min() {
+        checkNotEmpty();
+
+        return min;
+    }
+
+    /**
+     * @throws NoSuchElementException if there are no elements
+     */
+    public long max() {
+        checkNotEmpty();
+
+        return max;
+    }
+
+    private void checkNotEmpty() {
+        if (count == 0)
+            throw new NoSuchElementException("The window is empty.");
+    }
+
+    @Override
+    public String toString() {
+        return "LongWindowStatistics{count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max +
+                ", mean=" + mean() + ", variance=" + variance() + '}';
+    }
+}
@@ -1,18 +1,35 @@
 package com.railsreactor.util;
 
-import java.io.Serializable;
+import java.io.*;
+import java.lang.reflect.Array;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
 public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
         implements Serializable {
-    private static final long serialVersionUID = 777;
-    private final int CAPACITY;
-    private Object[] queue;
+    private static final long serialVersionUID = 779;
+    private static final int SNAPSHOT_MAGIC = 0x4D524953; // "MRIS"
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+    private static final int SNAPSHOT_BUFFER_SIZE = 64 * 1024;
+
+    private int capacity;
+
+    /**
+     * The storage, written by {@code writeObject} as the live elements only.
+     */
+    transient private Object[] queue;
+
+    /**
+     * The index of the head (the oldest) element in the circular array {@code queue}.
+     */
+    transient private int head = 0;
 
     /**
      * The current number of elements in this queue.
      */
-    private int size = 0;
+    transient private int size = 0;
 
     /**
      * The number of times this queue has been <i>structurally modified</i>.
@@ -20,11 +37,50 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
      */
     transient private int modificationCount;
 
+    transient private EvictionListener<? super E> evictionListener;
+
+    /**
+     * The number of elements discarded by offer because this queue was full.
+     */
+    transient private long evictionCount;
+
+    /**
+     * Whether {@code index} is maintained.
+     */
+    private final boolean indexed;
+
+    /**
+     * The number of occurrences of every element in this queue, or {@code null} if this queue is not indexed.
+     */
+    transient private Map<Object, Integer> index;
+
     public MostRecentlyInsertedQueue(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}
+     */
+    public MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, false);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}
+     * @param indexed          whether to keep a hash index of the elements, which makes {@code contains} O(1)
+     *                         and lets {@code remove(Object)} reject absent elements in O(1). Removing a present
+     *                         element is still O(n): the index only counts occurrences, so the element is found
+     *                         by a scan and the gap it leaves is closed by shifting. The index costs a hash map
+     *                         update on every offer, eviction and removal.
+     */
+    public MostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener, boolean indexed) {
         if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
 
-        this.CAPACITY = capacity;
-        this.queue = new Object[CAPACITY];
+        this.capacity = capacity;
+        this.queue = new Object[capacity];
+        this.evictionListener = evictionListener;
+        this.indexed = indexed;
+        this.index = indexed ? new HashMap<>() : null;
     }
 
 
@@ -39,27 +95,135 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
             throw new NullPointerException("This queue does NOT support null elements.");
 
         if (queueIsFull()) {
-            shiftElementsToTheLeftByOneStartingFromIndex(0);
-            queue[CAPACITY - 1] = element;
+            @SuppressWarnings("unchecked")
+            E evicted = (E) queue[head];
+            queue[head] = element;
+            head = nextIndex(head);
+            modificationCount++;
+            evictionCount++;
+            unindex(evicted);
+            index(element);
+
+            if (evictionListener != null)
+                evictionListener.onEviction(evicted);
 
         } else {
-            queue[size] = element;
+            queue[physicalIndex(size)] = element;
             size++;
+            modificationCount++;
+            index(element);
         }
 
-        modificationCount++;
-
         return true;
     }
 
-    private void shiftElementsToTheLeftByOneStartingFromIndex(int startIndex) {
-        for (int i = startIndex; i <= (size - 2); i++) {
-            queue[i] = queue[i + 1];
+    /**
+     * Adds all elements of {@code collection} in one pass, see {@link #offerAll(Object[], int, int)}.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        if (collection == this)
+            throw new IllegalArgumentException("The queue cannot be added to itself.");
+
+        @SuppressWarnings("unchecked")
+        E[] batch = (E[]) collection.toArray();
+        offerAll(batch, 0, batch.length);
+
+        return batch.length > 0;
+    }
+
+    public void offerAll(E[] batch) {
+        offerAll(batch, 0, batch.length);
+    }
+
+    public void offerAll(List<? extends E> list, int fromIndex, int toIndex) {
+        @SuppressWarnings("unchecked")
+        E[] batch = (E[]) list.subList(fromIndex, toIndex).toArray();
+        offerAll(batch, 0, batch.length);
+    }
+
+    /**
+     * Offers {@code length} elements of {@code batch} starting at {@code offset}, with the same result
+     * as offering them one by one: if the batch is larger than the capacity, only its last
+     * {@code capacity} elements are kept. The elements are copied into the storage with at most
+     * two array copies and the queue is modified once, so iterators observe the batch as a whole.
+     *
+     * @throws NullPointerException if the batch contains a null element; the queue is not modified then
+     */
+    public void offerAll(E[] batch, int offset, int length) {
+        if (offset < 0 || length < 0 || length > batch.length - offset)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length +
+                    ", array length " + batch.length);
+        for (int i = offset; i < offset + length; i++)
+            if (batch[i] == null)
+                throw new NullPointerException("This queue does NOT support null elements.");
+
+        if (length == 0)
+            return;
+
+        int skippedCount = Math.max(0, length - capacity);
+        int keptCount = length - skippedCount;
+        int evictedCount = Math.max(0, size + keptCount - capacity);
+
+        Object[] evicted = null;
+        if (evictionListener != null && evictedCount + skippedCount > 0) {
+            evicted = new Object[evictedCount + skippedCount];
+            for (int i = 0; i < evictedCount; i++)
+                evicted[i] = queue[physicalIndex(i)];
+            System.arraycopy(batch, offset, evicted, evictedCount, skippedCount);
+        }
+
+        for (int i = 0; i < evictedCount; i++)
+            unindex(queue[physicalIndex(i)]);
+
+        // the slots of the evicted elements are overwritten below, as the queue ends up full
+        head = physicalIndex(evictedCount);
+        size -= evictedCount;
+
+        int tailIndex = physicalIndex(size);
+        int firstPartLength = Math.min(keptCount, capacity - tailIndex);
+        System.arraycopy(batch, offset + skippedCount, queue, tailIndex, firstPartLength);
+        System.arraycopy(batch, offset + skippedCount + firstPartLength, queue, 0, keptCount - firstPartLength);
+
+        size += keptCount;
+        modificationCount++;
+        evictionCount += evictedCount + skippedCount;
+
+        for (int i = offset + skippedCount; i < offset + length; i++)
+            index(batch[i]);
+
+        if (evicted != null) {
+            for (Object element : evicted) {
+                @SuppressWarnings("unchecked")
+                E evictedElement = (E) element;
+                evictionListener.onEviction(evictedElement);
+            }
         }
     }
 
+    private void index(E element) {
+        if (index != null)
+            index.merge(element, 1, Integer::sum);
+    }
+
+    private void unindex(Object element) {
+        if (index != null)
+            index.computeIfPresent(element, (key, count) -> (count == 1) ? null : count - 1);
+    }
+
     private boolean queueIsFull() {
-        return (size == CAPACITY);
+        return (size == capacity);
+    }
+
+    private int nextIndex(int index) {
+        return (index == capacity - 1) ? 0 : index + 1;
+    }
+
+    /**
+     * Converts a logical position (0 is the head) into an index of the circular array.
+     */
+    private int physicalIndex(int logicalIndex) {
+        return (logicalIndex < capacity - head) ? head + logicalIndex : logicalIndex - (capacity - head);
     }
 
     @Override
@@ -68,11 +232,12 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
             return null;
 
         @SuppressWarnings("unchecked")
-        E result = (E) queue[0];
-        shiftElementsToTheLeftByOneStartingFromIndex(0);
-        queue[size - 1] = null;
+        E result = (E) queue[head];
+        queue[head] = null;
+        head = nextIndex(head);
         size--;
         modificationCount++;
+        unindex(result);
 
         return result;
     }
@@ -80,7 +245,7 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
     @SuppressWarnings("unchecked")
     @Override
     public E peek() {
-        return (size == 0) ? null : (E) queue[0];
+        return (size == 0) ? null : (E) queue[head];
     }
 
     @Override
@@ -88,33 +253,137 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
         modificationCount++;
 
         for (int i = 0; i < size; i++)
-            queue[i] = null;
+            queue[physicalIndex(i)] = null;
 
+        head = 0;
         size = 0;
+
+        if (index != null)
+            index.clear();
     }
 
     public int capacity() {
-        return CAPACITY;
+        return capacity;
+    }
+
+    /**
+     * Changes the capacity of this queue. Shrinking takes the oldest elements out until the queue
+     * fits the new capacity; they are returned rather than reported to the eviction listener
+     * or counted as evictions. The storage is reallocated, so this costs a copy of the kept elements.
+     *
+     * @return the elements taken out, from the oldest to the newest
+     */
+    public List<E> setCapacity(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        int evictedCount = Math.max(0, size - capacity);
+        List<E> evicted = new ArrayList<>(evictedCount);
+        for (int i = 0; i < evictedCount; i++) {
+            @SuppressWarnings("unchecked")
+            E element = (E) queue[physicalIndex(i)];
+            evicted.add(element);
+            unindex(element);
+        }
+
+        int keptCount = size - evictedCount;
+        int start = physicalIndex(evictedCount);
+        int firstPartLength = Math.min(keptCount, this.capacity - start);
+        Object[] resized = new Object[capacity];
+        System.arraycopy(queue, start, resized, 0, firstPartLength);
+        System.arraycopy(queue, 0, resized, firstPartLength, keptCount - firstPartLength);
+
+        this.capacity = capacity;
+        queue = resized;
+        head = 0;
+        size = keptCount;
+        modificationCount++;
+
+        return evicted;
+    }
+
+    /**
+     * @return the number of elements discarded by offer because this queue was full
+     */
+    public long evictionCount() {
+        return evictionCount;
     }
 
     @Override
     public boolean contains(Object obj) {
+        if (index != null)
+            return obj != null && index.containsKey(obj);
+
         return indexOf(obj) != -1;
     }
 
+    /**
+     * Removes the oldest occurrence of the element. An indexed queue rejects absent elements in O(1);
+     * removing a present element scans for it and shifts the elements on the shorter side of the gap.
+     */
+    @Override
+    public boolean remove(Object obj) {
+        int logicalIndex = indexOf(obj);
+        if (logicalIndex == -1)
+            return false;
+
+        removeAt(logicalIndex);
+        modificationCount++;
+
+        return true;
+    }
+
     private int indexOf(Object obj) {
+        if (index != null && (obj == null || !index.containsKey(obj)))
+            return -1;
+
         if (obj != null) {
             for (int i = 0; i < size; i++)
-                if (obj.equals(queue[i]))
+                if (obj.equals(queue[physicalIndex(i)]))
                     return i;
         }
 
         return -1;
     }
 
+    /**
+     * Removes the element at the given logical position shifting the shorter
+     * of the two surrounding runs of elements by one slot.
+     */
+    private void removeAt(int logicalIndex) {
+        unindex(queue[physicalIndex(logicalIndex)]);
+
+        if (logicalIndex < size / 2) {
+            for (int i = logicalIndex; i > 0; i--)
+                queue[physicalIndex(i)] = queue[physicalIndex(i - 1)];
+
+            queue[head] = null;
+            head = nextIndex(head);
+
+        } else {
+            for (int i = logicalIndex; i < size - 1; i++)
+                queue[physicalIndex(i)] = queue[physicalIndex(i + 1)];
+
+            queue[physicalIndex(size - 1)] = null;
+        }
+
+        size--;
+    }
+
+    /**
+     * Copies the elements from head to tail into the beginning of {@code destination}.
+     */
+    private void copyElementsTo(Object[] destination) {
+        int firstPartLength = Math.min(size, capacity - head);
+        System.arraycopy(queue, head, destination, 0, firstPartLength);
+        System.arraycopy(queue, 0, destination, firstPartLength, size - firstPartLength);
+    }
+
     @Override
     public Object[] toArray() {
-        return Arrays.copyOf(queue, size);
+        Object[] result = new Object[size];
+        copyElementsTo(result);
+
+        return result;
     }
 
     @SuppressWarnings("unchecked")
@@ -122,9 +391,9 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
     public <T> T[] toArray(T[] newArray) {
         final int size = this.size;
         if (newArray.length < size)
-            return (T[]) Arrays.copyOf(queue, size, newArray.getClass());
+            newArray = (T[]) Array.newInstance(newArray.getClass().getComponentType(), size);
 
-        System.arraycopy(queue, 0, newArray, 0, size);
+        copyElementsTo(newArray);
 
         if (newArray.length > size)
             newArray[size] = null;
@@ -132,6 +401,123 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
         return newArray;
     }
 
+    /**
+     * Writes the elements from head to tail to {@code out}, preceded by a header with their number.
+     * Nothing is buffered besides what {@code out} buffers itself, so a snapshot of any size is
+     * written in constant memory. The snapshot can be restored by {@link #readSnapshot(DataInput, ElementCodec)}.
+     *
+     * @throws ConcurrentModificationException if the codec modifies this queue
+     */
+    public void writeSnapshot(DataOutput out, ElementCodec<? super E> codec) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_FORMAT_VERSION);
+        out.writeInt(size);
+
+        for (E element : this)
+            codec.write(element, out);
+    }
+
+    /**
+     * Writes a snapshot, see {@link #writeSnapshot(DataOutput, ElementCodec)}, to {@code channel}
+     * through a buffer of a fixed size. The channel is not closed.
+     */
+    public void writeSnapshot(WritableByteChannel channel, ElementCodec<? super E> codec) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel), SNAPSHOT_BUFFER_SIZE));
+        writeSnapshot(out, codec);
+        out.flush();
+    }
+
+    /**
+     * Replaces the elements of this queue with the elements of a snapshot written by
+     * {@link #writeSnapshot(DataOutput, ElementCodec)}. If the snapshot holds more elements than
+     * the capacity of this queue, only the most recent ones are kept. The replaced and the skipped
+     * elements are not reported to the eviction listener.
+     * <p>
+     * The snapshot is read completely before this queue is modified, so this queue is left
+     * unchanged if the snapshot cannot be read.
+     *
+     * @throws IOException          if the snapshot is truncated or is not a snapshot of this queue class
+     * @throws NullPointerException if the codec returns a null element
+     */
+    public void readSnapshot(DataInput in, ElementCodec<? extends E> codec) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC)
+            throw new IOException("The data is not a queue snapshot.");
+        int version = in.readInt();
+        if (version != SNAPSHOT_FORMAT_VERSION)
+            throw new IOException("Unsupported format version: " + version);
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("Corrupted header: element count " + count + ".");
+
+        int skippedCount = Math.max(0, count - capacity);
+        for (int i = 0; i < skippedCount; i++)
+            codec.read(in);
+
+        Object[] elements = new Object[count - skippedCount];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = codec.read(in);
+            if (elements[i] == null)
+                throw new NullPointerException("This queue does NOT support null elements.");
+        }
+
+        clear();
+        copyElementsFrom(elements);
+    }
+
+    /**
+     * Reads a snapshot, see {@link #readSnapshot(DataInput, ElementCodec)}, from {@code channel}.
+     * The channel is read through a buffer and may be consumed past the end of the snapshot,
+     * so the snapshot should be the rest of the channel. The channel is not closed.
+     */
+    public void readSnapshot(ReadableByteChannel channel, ElementCodec<? extends E> codec) throws IOException {
+        readSnapshot(new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), SNAPSHOT_BUFFER_SIZE)), codec);
+    }
+
+    /**
+     * Fills this empty queue with {@code elements}, which must not outnumber the capacity.
+     */
+    private void copyElementsFrom(Object[] elements) {
+        System.arraycopy(elements, 0, queue, 0, elements.length);
+        size = elements.length;
+
+        for (Object element : elements) {
+            @SuppressWarnings("unchecked")
+            E indexedElement = (E) element;
+            index(indexedElement);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+
+        for (int i = 0; i < size; i++)
+            out.writeObject(queue[physicalIndex(i)]);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        if (capacity <= 0)
+            throw new InvalidObjectException("Capacity must be positive.");
+        int count = in.readInt();
+        if (count < 0 || count > capacity)
+            throw new InvalidObjectException("Size must be between 0 and the capacity.");
+
+        Object[] elements = new Object[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = in.readObject();
+            if (elements[i] == null)
+                throw new InvalidObjectException("This queue does NOT support null elements.");
+        }
+
+        queue = new Object[capacity];
+        index = indexed ? new HashMap<>() : null;
+        copyElementsFrom(elements);
+    }
+
     @Override
     public Iterator<E> iterator() {
         return new ThisIterator();
@@ -183,7 +569,7 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
 
         private E getNextElement() {
             @SuppressWarnings("unchecked")
-            E nextElement = (E) queue[currentIndex];
+            E nextElement = (E) queue[physicalIndex(currentIndex)];
             lastReturnedElementIndex = currentIndex;
             currentIndex++;
 
@@ -191,9 +577,7 @@ public class MostRecentlyInsertedQueue<E> extends AbstractQueue<E>
         }
 
         private void removeLastReturnedElement() {
-            shiftElementsToTheLeftByOneStartingFromIndex(lastReturnedElementIndex);
-            queue[size - 1] = null;
-            size--;
+            removeAt(lastReturnedElementIndex);
             lastReturnedElementIndex = -1;
             currentIndex--;
         }
@@ -0,0 +1,350 @@
+package com.railsreactor.util;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A variant of {@link MostRecentlyInsertedQueue} that keeps its elements outside the Java heap
+ * as fixed-size records in direct {@link ByteBuffer}s.
+ * <p>
+ * Elements are converted by a {@link RecordCodec}, so {@link #peek()}, {@link #poll()} and
+ * the iterator create a new object for every element they return. To read records without
+ * materializing them use a {@link Record} flyweight with {@link #peekRecord(Record)},
+ * {@link #getRecord(int, Record)} or {@link #forEachRecord(Consumer)}.
+ * <p>
+ * The native memory is released by {@link #close()}; any other method called afterwards
+ * throws IllegalStateException, and so does reading a {@link Record} that points into this queue.
+ * This class is not thread-safe.
+ */
+public class OffHeapMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Closeable {
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final int CAPACITY;
+    private final RecordCodec<E> codec;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private ByteBuffer[] segments;
+
+    /**
+     * The index of the head (the oldest) record in the circular storage.
+     */
+    private int head = 0;
+
+    /**
+     * The current number of elements in this queue.
+     */
+    private int size = 0;
+
+    /**
+     * The number of times this queue has been <i>structurally modified</i>.
+     * Used by the iterator to throw ConcurrentModificationException.
+     */
+    private int modificationCount;
+
+    public OffHeapMostRecentlyInsertedQueue(int capacity, RecordCodec<E> codec) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (codec.recordSize() <= 0 || codec.recordSize() > MAX_SEGMENT_SIZE)
+            throw new IllegalArgumentException("Record size must be between 1 and " + MAX_SEGMENT_SIZE + ".");
+
+        this.CAPACITY = capacity;
+        this.codec = codec;
+        this.recordSize = codec.recordSize();
+        this.recordsPerSegment = Math.min(capacity, MAX_SEGMENT_SIZE / recordSize);
+        this.segments = allocateSegments();
+    }
+
+    private ByteBuffer[] allocateSegments() {
+        int segmentCount = (CAPACITY + recordsPerSegment - 1) / recordsPerSegment;
+        ByteBuffer[] result = new ByteBuffer[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+            int records = Math.min(recordsPerSegment, CAPACITY - i * recordsPerSegment);
+            result[i] = ByteBuffer.allocateDirect(records * recordSize).order(ByteOrder.nativeOrder());
+        }
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+        checkNotClosed();
+
+        int index = (size == CAPACITY) ? head : physicalIndex(size);
+        codec.write(element, segmentOf(index), offsetOf(index));
+
+        if (size == CAPACITY)
+            head = nextIndex(head);
+        else
+            size++;
+        modificationCount++;
+
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        checkNotClosed();
+        if (size == 0)
+            return null;
+
+        E result = codec.read(segmentOf(head), offsetOf(head));
+        head = nextIndex(head);
+        size--;
+        modificationCount++;
+
+        return result;
+    }
+
+    @Override
+    public E peek() {
+        checkNotClosed();
+
+        return (size == 0) ? null : codec.read(segmentOf(head), offsetOf(head));
+    }
+
+    @Override
+    public void clear() {
+        checkNotClosed();
+        modificationCount++;
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Points {@code record} at the head element without removing it.
+     *
+     * @return {@code false} if this queue is empty
+     */
+    public boolean peekRecord(Record record) {
+        checkNotClosed();
+        if (size == 0)
+            return false;
+
+        record.moveTo(this, segmentOf(head), offsetOf(head));
+        return true;
+    }
+
+    /**
+     * Points {@code record} at the element with the given position counting from the head.
+     *
+     * @throws IndexOutOfBoundsException if there is no such element
+     */
+    public void getRecord(int index, Record record) {
+        checkNotClosed();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+
+        int physicalIndex = physicalIndex(index);
+        record.moveTo(this, segmentOf(physicalIndex), offsetOf(physicalIndex));
+    }
+
+    /**
+     * Passes every record from head to tail to {@code action} through the same flyweight.
+     */
+    public void forEachRecord(Consumer<? super Record> action) {
+        checkNotClosed();
+        Record record = new Record();
+        int expectedModificationCount = modificationCount;
+
+        for (int i = 0; i < size; i++) {
+            int physicalIndex = physicalIndex(i);
+            record.moveTo(this, segmentOf(physicalIndex), offsetOf(physicalIndex));
+            action.accept(record);
+
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified by the action.");
+        }
+    }
+
+    /**
+     * Releases the native memory of this queue. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (segments == null)
+            return;
+
+        for (ByteBuffer segment : segments)
+            DirectBuffers.release(segment);
+
+        segments = null;
+        size = 0;
+        modificationCount++;
+    }
+
+    private void checkNotClosed() {
+        if (segments == null)
+            throw new IllegalStateException("The queue has been closed.");
+    }
+
+    private ByteBuffer segmentOf(int physicalIndex) {
+        return segments[physicalIndex / recordsPerSegment];
+    }
+
+    private int offsetOf(int physicalIndex) {
+        return (physicalIndex % recordsPerSegment) * recordSize;
+    }
+
+    private int nextIndex(int index) {
+        return (index == CAPACITY - 1) ? 0 : index + 1;
+    }
+
+    private int physicalIndex(int logicalIndex) {
+        return (logicalIndex < CAPACITY - head) ? head + logicalIndex : logicalIndex - (CAPACITY - head);
+    }
+
+    /**
+     * Removes the record at the given logical position moving the records after it one slot back.
+     */
+    private void removeAt(int logicalIndex) {
+        for (int i = logicalIndex; i < size - 1; i++)
+            copyRecord(physicalIndex(i + 1), physicalIndex(i));
+
+        size--;
+    }
+
+    private void copyRecord(int fromIndex, int toIndex) {
+        ByteBuffer source = segmentOf(fromIndex).duplicate();
+        int sourceOffset = offsetOf(fromIndex);
+        source.limit(sourceOffset + recordSize).position(sourceOffset);
+
+        ByteBuffer destination = segmentOf(toIndex).duplicate();
+        destination.position(offsetOf(toIndex));
+        destination.put(source);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        checkNotClosed();
+        return new ThisIterator();
+    }
+
+    private final class ThisIterator implements Iterator<E> {
+        private int expectedModificationCount = modificationCount;
+        private int currentIndex = 0;
+        private int lastReturnedElementIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            return (currentIndex < size);
+        }
+
+        @Override
+        public E next() {
+            checkQueueNotIllegallyModified();
+
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            int physicalIndex = physicalIndex(currentIndex);
+            lastReturnedElementIndex = currentIndex;
+            currentIndex++;
+
+            return codec.read(segmentOf(physicalIndex), offsetOf(physicalIndex));
+        }
+
+        @Override
+        public void remove() {
+            checkQueueNotIllegallyModified();
+
+            if (lastReturnedElementIndex < 0)
+                throw new IllegalStateException("next() hasn't yet been called, or " +
+                        "remove() has been called twice");
+
+            removeAt(lastReturnedElementIndex);
+            lastReturnedElementIndex = -1;
+            currentIndex--;
+        }
+
+        private void checkQueueNotIllegallyModified() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+        }
+    }
+
+    /**
+     * A reusable view of one record. It stays valid until the queue is modified.
+     * Field offsets are relative to the beginning of the record; the byte order is the native one.
+     * <p>
+     * Once the queue is closed every read throws IllegalStateException instead of touching the freed memory.
+     */
+    public static final class Record {
+        private OffHeapMostRecentlyInsertedQueue<?> queue;
+        private ByteBuffer buffer;
+        private int offset;
+
+        private void moveTo(OffHeapMostRecentlyInsertedQueue<?> queue, ByteBuffer buffer, int offset) {
+            this.queue = queue;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the buffer holding the record; use absolute access starting from {@link #offset()}.
+         * The buffer must not be accessed after the queue is closed.
+         */
+        public ByteBuffer buffer() {
+            checkQueueNotClosed();
+            return buffer;
+        }
+
+        public int offset() {
+            return offset;
+        }
+
+        public byte getByte(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.get(offset + fieldOffset);
+        }
+
+        public short getShort(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.getShort(offset + fieldOffset);
+        }
+
+        public int getInt(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.getInt(offset + fieldOffset);
+        }
+
+        public long getLong(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.getLong(offset + fieldOffset);
+        }
+
+        public float getFloat(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.getFloat(offset + fieldOffset);
+        }
+
+        public double getDouble(int fieldOffset) {
+            checkQueueNotClosed();
+            return buffer.getDouble(offset + fieldOffset);
+        }
+
+        private void checkQueueNotClosed() {
+            if (queue == null)
+                throw new IllegalStateException("The record does not point at any element.");
+
+            queue.checkNotClosed();
+        }
+    }
+}
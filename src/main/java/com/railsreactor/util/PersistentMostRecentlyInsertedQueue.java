@@ -0,0 +1,329 @@
+package com.railsreactor.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A durable variant of {@link MostRecentlyInsertedQueue} that keeps its ring of fixed-size records
+ * in a memory-mapped file, so the window survives a JVM restart.
+ * <p>
+ * File layout: a {@value #HEADER_SIZE}-byte header (magic, format version, capacity, record size,
+ * head position, tail position, element count) followed by {@code capacity} slots. Every slot
+ * holds a CRC32 checksum, the position the record was offered at and the record itself.
+ * Positions grow monotonically, the slot of a position is {@code position % capacity}.
+ * <p>
+ * An offer is a couple of memory writes: the record first, then the header. The operating system
+ * writes dirty pages back on its own; {@link #force()} or the optional force interval given to the
+ * constructor makes the data durable against an operating system crash as well.
+ * <p>
+ * Reopening a file restores the window in O(1): only the records at the head and the tail are
+ * checked. A record written after the last header update is taken into account, and a torn record
+ * at the ring boundary (a bad checksum or an unexpected position) is dropped.
+ * <p>
+ * The iterator does not support removal. This class is not thread-safe, and a file must not be
+ * opened by more than one queue at a time.
+ */
+public class PersistentMostRecentlyInsertedQueue<E> extends AbstractQueue<E> implements Closeable {
+    static final int HEADER_SIZE = 64;
+    static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4D524951; // "MRIQ"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int RECORD_SIZE_OFFSET = 12;
+    private static final int HEAD_OFFSET = 16;
+    private static final int TAIL_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+
+    private static final int CHECKSUM_OFFSET = 0;
+    private static final int POSITION_OFFSET = 4;
+    private static final int RECORD_OFFSET = 12;
+
+    private final int CAPACITY;
+    private final RecordCodec<E> codec;
+    private final int slotSize;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final CRC32 checksum = new CRC32();
+
+    private final long forceIntervalNanos;
+    private long lastForceNanos;
+
+    /**
+     * The position of the head (the oldest) element.
+     */
+    private long head;
+
+    /**
+     * The position the next offered element will be written to.
+     */
+    private long tail;
+
+    /**
+     * The number of times this queue has been <i>structurally modified</i>.
+     * Used by the iterator to throw ConcurrentModificationException.
+     */
+    private int modificationCount;
+
+    /**
+     * Opens the queue stored in {@code file} or creates a new one if the file does not exist.
+     * Data is forced to the storage device only by {@link #force()} and {@link #close()}.
+     */
+    public PersistentMostRecentlyInsertedQueue(Path file, int capacity, RecordCodec<E> codec) throws IOException {
+        this(file, capacity, codec, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Opens the queue stored in {@code file} or creates a new one if the file does not exist.
+     *
+     * @param forceInterval how often offers and polls force the data to the storage device,
+     *                      zero to force it only by {@link #force()} and {@link #close()}
+     * @throws IllegalArgumentException if the existing file has a different capacity or record size
+     * @throws IOException              if the file cannot be mapped or is not a queue file
+     */
+    public PersistentMostRecentlyInsertedQueue(Path file, int capacity, RecordCodec<E> codec,
+                                               long forceInterval, TimeUnit unit) throws IOException {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (codec.recordSize() <= 0) throw new IllegalArgumentException("Record size must be positive.");
+        if (forceInterval < 0) throw new IllegalArgumentException("Force interval must not be negative.");
+
+        this.CAPACITY = capacity;
+        this.codec = codec;
+        this.slotSize = RECORD_OFFSET + codec.recordSize();
+        this.forceIntervalNanos = unit.toNanos(forceInterval);
+
+        long fileSize = HEADER_SIZE + (long) capacity * slotSize;
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The file would exceed " + Integer.MAX_VALUE + " bytes.");
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean isNewFile = (channel.size() == 0);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+            if (isNewFile)
+                initializeHeader();
+            else
+                recover();
+
+        } catch (IOException | RuntimeException e) {
+            DirectBuffers.release(buffer);
+            channel.close();
+            throw e;
+        }
+
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void initializeHeader() {
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, FORMAT_VERSION);
+        buffer.putInt(CAPACITY_OFFSET, CAPACITY);
+        buffer.putInt(RECORD_SIZE_OFFSET, codec.recordSize());
+        head = 0;
+        tail = 0;
+        writeHeadAndTail();
+    }
+
+    private void recover() throws IOException {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC)
+            throw new IOException("The file is not a queue file.");
+        if (buffer.getInt(VERSION_OFFSET) != FORMAT_VERSION)
+            throw new IOException("Unsupported format version: " + buffer.getInt(VERSION_OFFSET));
+        if (buffer.getInt(CAPACITY_OFFSET) != CAPACITY || buffer.getInt(RECORD_SIZE_OFFSET) != codec.recordSize())
+            throw new IllegalArgumentException("The file was created with capacity " + buffer.getInt(CAPACITY_OFFSET) +
+                    " and record size " + buffer.getInt(RECORD_SIZE_OFFSET) + ".");
+
+        head = buffer.getLong(HEAD_OFFSET);
+        tail = buffer.getLong(TAIL_OFFSET);
+        if (head < 0 || tail < head)
+            throw new IOException("Corrupted header: head " + head + ", tail " + tail + ".");
+
+        // the header may have been written only partially
+        head = Math.max(head, tail - CAPACITY);
+
+        if (slotHoldsValidRecord(tail)) {
+            // the record was written, but the header was not updated
+            tail++;
+            head = Math.max(head, tail - CAPACITY);
+
+        } else if (tail - head == CAPACITY && !slotHoldsValidRecord(head)) {
+            // a torn overwrite of the head record which shares its slot with the tail
+            head++;
+        }
+
+        while (tail > head && !slotHoldsValidRecord(tail - 1))
+            tail--;
+
+        while (head < tail && !slotHoldsValidRecord(head))
+            head++;
+
+        writeHeadAndTail();
+    }
+
+    private boolean slotHoldsValidRecord(long position) {
+        int slotOffset = slotOffsetOf(position);
+
+        return buffer.getLong(slotOffset + POSITION_OFFSET) == position
+                && buffer.getInt(slotOffset + CHECKSUM_OFFSET) == checksumOf(slotOffset);
+    }
+
+    private int checksumOf(int slotOffset) {
+        ByteBuffer slot = buffer.duplicate();
+        slot.limit(slotOffset + slotSize).position(slotOffset + POSITION_OFFSET);
+
+        checksum.reset();
+        checksum.update(slot);
+
+        return (int) checksum.getValue();
+    }
+
+    private void writeHeadAndTail() {
+        buffer.putLong(TAIL_OFFSET, tail);
+        buffer.putLong(HEAD_OFFSET, head);
+        buffer.putLong(COUNT_OFFSET, tail - head);
+    }
+
+    @Override
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+        checkNotClosed();
+
+        int slotOffset = slotOffsetOf(tail);
+        codec.write(element, buffer, slotOffset + RECORD_OFFSET);
+        buffer.putLong(slotOffset + POSITION_OFFSET, tail);
+        buffer.putInt(slotOffset + CHECKSUM_OFFSET, checksumOf(slotOffset));
+
+        tail++;
+        if (tail - head > CAPACITY)
+            head++;
+
+        writeHeadAndTail();
+        modificationCount++;
+        forceIfIntervalElapsed();
+
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        checkNotClosed();
+        if (tail == head)
+            return null;
+
+        E result = codec.read(buffer, slotOffsetOf(head) + RECORD_OFFSET);
+        head++;
+        writeHeadAndTail();
+        modificationCount++;
+        forceIfIntervalElapsed();
+
+        return result;
+    }
+
+    @Override
+    public E peek() {
+        checkNotClosed();
+
+        return (tail == head) ? null : codec.read(buffer, slotOffsetOf(head) + RECORD_OFFSET);
+    }
+
+    @Override
+    public void clear() {
+        checkNotClosed();
+        head = tail;
+        writeHeadAndTail();
+        modificationCount++;
+    }
+
+    /**
+     * Forces all changes made so far to the storage device.
+     */
+    public void force() {
+        checkNotClosed();
+        buffer.force();
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void forceIfIntervalElapsed() {
+        if (forceIntervalNanos > 0 && System.nanoTime() - lastForceNanos >= forceIntervalNanos)
+            force();
+    }
+
+    /**
+     * Forces the changes to the storage device and unmaps the file.
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null)
+            return;
+
+        try {
+            buffer.force();
+        } finally {
+            DirectBuffers.release(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    private void checkNotClosed() {
+        if (buffer == null)
+            throw new IllegalStateException("The queue has been closed.");
+    }
+
+    private int slotOffsetOf(long position) {
+        return HEADER_SIZE + (int) (position % CAPACITY) * slotSize;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        checkNotClosed();
+        return new ThisIterator();
+    }
+
+    private final class ThisIterator implements Iterator<E> {
+        private final int expectedModificationCount = modificationCount;
+        private long currentPosition = head;
+
+        @Override
+        public boolean hasNext() {
+            return (currentPosition < tail);
+        }
+
+        @Override
+        public E next() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            return codec.read(buffer, slotOffsetOf(currentPosition++) + RECORD_OFFSET);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.railsreactor.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts elements to and from fixed-size binary records.
+ * <p>
+ * Implementations must use the absolute {@code get}/{@code put} methods of the buffer and
+ * must not touch more than {@link #recordSize()} bytes starting from {@code offset}.
+ */
+public interface RecordCodec<E> {
+
+    /**
+     * @return the size of every record in bytes
+     */
+    int recordSize();
+
+    void write(E element, ByteBuffer buffer, int offset);
+
+    E read(ByteBuffer buffer, int offset);
+}
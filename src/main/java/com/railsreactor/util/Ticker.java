@@ -0,0 +1,18 @@
+package com.railsreactor.util;
+
+/**
+ * A source of nanosecond time readings for the time-windowed queues.
+ * Only the difference between two readings is meaningful.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    long read();
+
+    /**
+     * @return a ticker reading {@link System#nanoTime()}
+     */
+    static Ticker systemTicker() {
+        return System::nanoTime;
+    }
+}
@@ -0,0 +1,155 @@
+package com.railsreactor.util;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A variant of {@link MostRecentlyInsertedQueue} that holds only the elements offered within
+ * the last {@code maxAge}, at most {@code capacity} of them.
+ * <p>
+ * Every element is stamped with a {@link Ticker} reading when it is offered. Elements are
+ * offered in time order, so the expired ones are always at the head: {@code offer}, {@code poll},
+ * {@code peek}, {@code size} and {@code iterator} discard them from there before doing their work,
+ * which costs amortized O(1) per element. An iterator does not discard elements that expire
+ * while it is in use.
+ * <p>
+ * Expired elements are reported to the eviction listener along with the elements evicted
+ * because the queue was full, but they are counted separately.
+ */
+public class TimeWindowedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+    private final MostRecentlyInsertedQueue<Timestamped<E>> entries;
+    private final long maxAgeNanos;
+    private final Ticker ticker;
+    private final EvictionListener<? super E> evictionListener;
+
+    /**
+     * The number of elements discarded because they were older than {@code maxAge}.
+     */
+    private long expirationCount;
+
+    public TimeWindowedMostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit) {
+        this(capacity, maxAge, unit, Ticker.systemTicker(), null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full or because
+     *                         they expired, may be {@code null}
+     */
+    public TimeWindowedMostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit, Ticker ticker,
+                                                 EvictionListener<? super E> evictionListener) {
+        if (maxAge <= 0) throw new IllegalArgumentException("Maximum age must be positive.");
+        if (ticker == null)
+            throw new NullPointerException();
+
+        this.entries = new MostRecentlyInsertedQueue<>(capacity, (evictionListener == null) ? null
+                : entry -> evictionListener.onEviction(entry.element));
+        this.maxAgeNanos = unit.toNanos(maxAge);
+        this.ticker = ticker;
+        this.evictionListener = evictionListener;
+    }
+
+    public int capacity() {
+        return entries.capacity();
+    }
+
+    public long maxAge(TimeUnit unit) {
+        return unit.convert(maxAgeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of elements discarded by offer because this queue was full
+     */
+    public long evictionCount() {
+        return entries.evictionCount();
+    }
+
+    /**
+     * @return the number of elements discarded because they were older than {@code maxAge}
+     */
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    @Override
+    public int size() {
+        expire(ticker.read());
+        return entries.size();
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        long now = ticker.read();
+        expire(now);
+
+        return entries.offer(new Timestamped<>(element, now));
+    }
+
+    @Override
+    public E poll() {
+        expire(ticker.read());
+        Timestamped<E> entry = entries.poll();
+
+        return (entry == null) ? null : entry.element;
+    }
+
+    @Override
+    public E peek() {
+        expire(ticker.read());
+        Timestamped<E> entry = entries.peek();
+
+        return (entry == null) ? null : entry.element;
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    private void expire(long now) {
+        Timestamped<E> entry;
+        while ((entry = entries.peek()) != null && now - entry.timestamp >= maxAgeNanos) {
+            entries.poll();
+            expirationCount++;
+
+            if (evictionListener != null)
+                evictionListener.onEviction(entry.element);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        expire(ticker.read());
+        final Iterator<Timestamped<E>> entryIterator = entries.iterator();
+
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return entryIterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return entryIterator.next().element;
+            }
+
+            @Override
+            public void remove() {
+                entryIterator.remove();
+            }
+        };
+    }
+
+    private static final class Timestamped<E> {
+        private final E element;
+        private final long timestamp;
+
+        private Timestamped(E element, long timestamp) {
+            this.element = element;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.railsreactor.util;
+
+/**
+ * Calculates the weight of an element for the weight-bounded queues, e.g. its size in bytes.
+ * The weight of an element must not change while the element is in a queue.
+ */
+@FunctionalInterface
+public interface Weigher<E> {
+
+    /**
+     * @return the weight of {@code element}, must not be negative
+     */
+    int weigh(E element);
+}
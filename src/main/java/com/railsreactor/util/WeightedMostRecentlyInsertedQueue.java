@@ -0,0 +1,267 @@
+package com.railsreactor.util;
+
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A variant of {@link MostRecentlyInsertedQueue} bounded by the total weight of its elements
+ * instead of their number. Offering an element evicts the oldest elements until the total weight
+ * fits {@code maxWeight} again.
+ * <p>
+ * The weight of every element is calculated once, when it is offered, and kept next to it,
+ * so weight accounting is O(1) per offered or evicted element. The circular array grows
+ * as needed and never shrinks.
+ */
+public class WeightedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+    private static final int INITIAL_ARRAY_LENGTH = 16;
+
+    private final long maxWeight;
+    private final Weigher<? super E> weigher;
+    private Object[] queue = new Object[INITIAL_ARRAY_LENGTH];
+    private int[] weights = new int[INITIAL_ARRAY_LENGTH];
+
+    /**
+     * The index of the head (the oldest) element in the circular array {@code queue}.
+     */
+    private int head = 0;
+
+    /**
+     * The current number of elements in this queue.
+     */
+    private int size = 0;
+
+    /**
+     * The total weight of the elements in this queue.
+     */
+    private long weight = 0;
+
+    /**
+     * The number of times this queue has been <i>structurally modified</i>.
+     * Used by the iterator to throw ConcurrentModificationException.
+     */
+    private int modificationCount;
+
+    private final EvictionListener<? super E> evictionListener;
+
+    /**
+     * The number of elements discarded by offer because the total weight exceeded {@code maxWeight}.
+     */
+    private long evictionCount;
+
+    public WeightedMostRecentlyInsertedQueue(long maxWeight, Weigher<? super E> weigher) {
+        this(maxWeight, weigher, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the total weight exceeded
+     *                         {@code maxWeight}, may be {@code null}
+     */
+    public WeightedMostRecentlyInsertedQueue(long maxWeight, Weigher<? super E> weigher,
+                                             EvictionListener<? super E> evictionListener) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("Maximum weight must be positive.");
+        if (weigher == null)
+            throw new NullPointerException();
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the total weight of the elements in this queue
+     */
+    public long weight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of elements discarded by offer because the total weight exceeded {@code maxWeight}
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the weight of {@code element} is negative or exceeds {@code maxWeight}
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        int elementWeight = weigher.weigh(element);
+        if (elementWeight < 0)
+            throw new IllegalArgumentException("Element weight must not be negative.");
+        if (elementWeight > maxWeight)
+            throw new IllegalArgumentException("Element weight " + elementWeight +
+                    " exceeds the maximum weight " + maxWeight + ".");
+
+        if (size == queue.length)
+            grow();
+
+        int index = physicalIndex(size);
+        queue[index] = element;
+        weights[index] = elementWeight;
+        size++;
+        weight += elementWeight;
+        modificationCount++;
+
+        // the new element fits on its own, so it is never evicted here
+        while (weight > maxWeight) {
+            E evicted = poll();
+            evictionCount++;
+
+            if (evictionListener != null)
+                evictionListener.onEviction(evicted);
+        }
+
+        return true;
+    }
+
+    private void grow() {
+        Object[] newQueue = new Object[queue.length * 2];
+        int[] newWeights = new int[queue.length * 2];
+
+        int firstPartLength = queue.length - head;
+        System.arraycopy(queue, head, newQueue, 0, firstPartLength);
+        System.arraycopy(queue, 0, newQueue, firstPartLength, head);
+        System.arraycopy(weights, head, newWeights, 0, firstPartLength);
+        System.arraycopy(weights, 0, newWeights, firstPartLength, head);
+
+        queue = newQueue;
+        weights = newWeights;
+        head = 0;
+    }
+
+    private int nextIndex(int index) {
+        return (index == queue.length - 1) ? 0 : index + 1;
+    }
+
+    /**
+     * Converts a logical position (0 is the head) into an index of the circular array.
+     */
+    private int physicalIndex(int logicalIndex) {
+        return (logicalIndex < queue.length - head) ? head + logicalIndex : logicalIndex - (queue.length - head);
+    }
+
+    @Override
+    public E poll() {
+        if (size == 0)
+            return null;
+
+        @SuppressWarnings("unchecked")
+        E result = (E) queue[head];
+        queue[head] = null;
+        weight -= weights[head];
+        head = nextIndex(head);
+        size--;
+        modificationCount++;
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E peek() {
+        return (size == 0) ? null : (E) queue[head];
+    }
+
+    @Override
+    public void clear() {
+        modificationCount++;
+
+        for (int i = 0; i < size; i++)
+            queue[physicalIndex(i)] = null;
+
+        head = 0;
+        size = 0;
+        weight = 0;
+    }
+
+    /**
+     * Removes the element at the given logical position shifting the shorter
+     * of the two surrounding runs of elements by one slot.
+     */
+    private void removeAt(int logicalIndex) {
+        weight -= weights[physicalIndex(logicalIndex)];
+
+        if (logicalIndex < size / 2) {
+            for (int i = logicalIndex; i > 0; i--)
+                moveElement(physicalIndex(i - 1), physicalIndex(i));
+
+            queue[head] = null;
+            head = nextIndex(head);
+
+        } else {
+            for (int i = logicalIndex; i < size - 1; i++)
+                moveElement(physicalIndex(i + 1), physicalIndex(i));
+
+            queue[physicalIndex(size - 1)] = null;
+        }
+
+        size--;
+        modificationCount++;
+    }
+
+    private void moveElement(int fromIndex, int toIndex) {
+        queue[toIndex] = queue[fromIndex];
+        weights[toIndex] = weights[fromIndex];
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ThisIterator();
+    }
+
+    private final class ThisIterator implements Iterator<E> {
+        private int expectedModificationCount = modificationCount;
+        private int currentIndex = 0;
+        private int lastReturnedElementIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            return (currentIndex < size);
+        }
+
+        @Override
+        public E next() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            @SuppressWarnings("unchecked")
+            E nextElement = (E) queue[physicalIndex(currentIndex)];
+            lastReturnedElementIndex = currentIndex++;
+
+            return nextElement;
+        }
+
+        @Override
+        public void remove() {
+            if (expectedModificationCount != modificationCount)
+                throw new ConcurrentModificationException("The queue was modified from outside this iterator.");
+            if (lastReturnedElementIndex < 0)
+                throw new IllegalStateException("next() hasn't yet been called, or " +
+                        "remove() has been called twice");
+
+            removeAt(lastReturnedElementIndex);
+            expectedModificationCount = modificationCount;
+            lastReturnedElementIndex = -1;
+            currentIndex--;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.EvictionListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * An {@link EvictionListener} that collects evicted elements and delivers them in batches
+ * to a consumer running on an {@link Executor}, so the producers only pay for appending
+ * the element to a buffer.
+ * <p>
+ * At most one batch is being delivered at any time, and batches preserve the order
+ * in which the elements were evicted by each producer.
+ * <p>
+ * Elements wait in a buffer while the consumer is slower than the evictions. The buffer can be
+ * bounded, in which case its oldest elements are dropped and counted ({@link #droppedCount()}).
+ * If the executor rejects a delivery, the elements stay in the buffer and are delivered after
+ * a later eviction schedules a delivery successfully; the rejection is not propagated to the producer.
+ * If the consumer throws, the exception goes to the executor and the remaining elements
+ * are delivered by a new delivery task.
+ */
+public class BatchingEvictionListener<E> implements EvictionListener<E> {
+    private final Consumer<? super List<E>> batchConsumer;
+    private final Executor executor;
+    private final int maxBatchSize;
+    private final int maxPendingElements;
+    private final Queue<E> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * Creates a listener with an unbounded buffer.
+     */
+    public BatchingEvictionListener(Consumer<? super List<E>> batchConsumer, Executor executor, int maxBatchSize) {
+        this(batchConsumer, executor, maxBatchSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxPendingElements the number of elements waiting for delivery above which the oldest
+     *                           of them are dropped
+     */
+    public BatchingEvictionListener(Consumer<? super List<E>> batchConsumer, Executor executor, int maxBatchSize,
+                                    int maxPendingElements) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("Batch size must be positive.");
+        if (maxPendingElements <= 0) throw new IllegalArgumentException("Max pending elements must be positive.");
+
+        this.batchConsumer = batchConsumer;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPendingElements = maxPendingElements;
+    }
+
+    /**
+     * @return the number of elements dropped because the buffer was full
+     */
+    public long droppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public void onEviction(E element) {
+        pending.offer(element);
+        if (pendingCount.incrementAndGet() > maxPendingElements && pollPending() != null)
+            droppedCount.increment();
+
+        scheduleDelivery();
+    }
+
+    private E pollPending() {
+        E element = pending.poll();
+        if (element != null)
+            pendingCount.decrementAndGet();
+
+        return element;
+    }
+
+    private void scheduleDelivery() {
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::deliver);
+            } catch (RejectedExecutionException e) {
+                // the elements stay pending for the next eviction to schedule
+                deliveryScheduled.set(false);
+            }
+        }
+    }
+
+    private void deliver() {
+        try {
+            List<E> batch = new ArrayList<>(maxBatchSize);
+            E element;
+            while ((element = pollPending()) != null) {
+                batch.add(element);
+                if (batch.size() == maxBatchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(maxBatchSize);
+                }
+            }
+
+            if (!batch.isEmpty())
+                batchConsumer.accept(batch);
+
+        } finally {
+            deliveryScheduled.set(false);
+
+            // an element may have arrived after the last poll and before the flag was reset,
+            // or the consumer may have thrown before the buffer was empty
+            if (!pending.isEmpty())
+                scheduleDelivery();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A ring of the {@code capacity} most recently offered elements that any number of consumers read
+ * without taking the elements out. Every consumer reads through its own {@link Cursor}, a position
+ * in the ring, so all consumers see every element unless they fall behind.
+ * <p>
+ * Producers claim a position by incrementing {@code tail} and overwrite the slot of that position.
+ * They never wait for consumers. A slot holds an immutable (position, element) pair, so a reader
+ * gets the element together with the position it was offered at by a single read; if a producer
+ * is lapped while writing, the slot keeps the element of the greater position.
+ * <p>
+ * A cursor that has fallen more than {@code capacity} elements behind skips forward to the oldest
+ * element still in the ring and adds the skipped elements to its {@link Cursor#missedCount() missed count}.
+ */
+public class BroadcastMostRecentlyInsertedRing<E> {
+    private final int capacity;
+    private final AtomicReferenceArray<Slot<E>> slots;
+
+    /**
+     * The position the next offered element will be written to.
+     */
+    private final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+    public BroadcastMostRecentlyInsertedRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of elements offered so far
+     */
+    public long offeredCount() {
+        return tail.get();
+    }
+
+    public void offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This ring does NOT support null elements.");
+
+        long position = tail.getAndIncrement();
+        int index = indexOf(position);
+        Slot<E> slot = new Slot<>(position, element);
+
+        for (;;) {
+            Slot<E> current = slots.get(index);
+
+            // a producer that lapped this one has already written a more recent element
+            if (current != null && current.position > position)
+                return;
+
+            if (slots.compareAndSet(index, current, slot))
+                return;
+        }
+    }
+
+    /**
+     * @return a cursor positioned at the oldest element in the ring
+     */
+    public Cursor newCursor() {
+        return new Cursor(Math.max(0, tail.get() - capacity));
+    }
+
+    /**
+     * @return a cursor that reads only the elements offered after its creation
+     */
+    public Cursor newCursorAtTail() {
+        return new Cursor(tail.get());
+    }
+
+    private int indexOf(long position) {
+        return (int) (position % capacity);
+    }
+
+    /**
+     * The read position of one consumer. A cursor is not thread-safe and
+     * is meant to be used by one consumer thread at a time.
+     */
+    public final class Cursor {
+        private long position;
+        private long missedCount;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * @return the position of the next element to be read
+         */
+        public long position() {
+            return position;
+        }
+
+        /**
+         * @return the number of elements offered after the current position
+         */
+        public long lag() {
+            return Math.max(0, tail.get() - position);
+        }
+
+        /**
+         * @return the number of elements this cursor skipped because they had been overwritten before it read them
+         */
+        public long missedCount() {
+            return missedCount;
+        }
+
+        /**
+         * Reads the next element and advances this cursor past it.
+         *
+         * @return the next element or {@code null} if there is no element this cursor has not read,
+         * or the producer of the next position has not written its element yet
+         */
+        public E poll() {
+            Slot<E> slot = nextSlot();
+            if (slot == null)
+                return null;
+
+            position++;
+            return slot.element;
+        }
+
+        /**
+         * @return the next element without advancing past it, or {@code null} as {@link #poll()} does
+         */
+        public E peek() {
+            Slot<E> slot = nextSlot();
+
+            return (slot == null) ? null : slot.element;
+        }
+
+        /**
+         * Reads up to {@code maxElements} elements into {@code target}.
+         *
+         * @return the number of elements added to {@code target}
+         */
+        public int drainTo(Collection<? super E> target, int maxElements) {
+            int drained = 0;
+            E element;
+            while (drained < maxElements && (element = poll()) != null) {
+                target.add(element);
+                drained++;
+            }
+
+            return drained;
+        }
+
+        /**
+         * Skips the overwritten positions and returns the slot of the current position
+         * or {@code null} if its element is not available yet.
+         */
+        private Slot<E> nextSlot() {
+            for (;;) {
+                long end = tail.get();
+                if (position >= end)
+                    return null;
+
+                if (end - position > capacity) {
+                    missedCount += end - capacity - position;
+                    position = end - capacity;
+                }
+
+                Slot<E> slot = slots.get(indexOf(position));
+                if (slot == null || slot.position < position)
+                    return null;
+
+                if (slot.position == position)
+                    return slot;
+
+                // overwritten by a producer that has lapped this cursor
+                missedCount++;
+                position++;
+            }
+        }
+    }
+
+    private static final class Slot<E> {
+        private final long position;
+        private final E element;
+
+        private Slot(long position, E element) {
+            this.position = position;
+            this.element = element;
+        }
+    }
+}
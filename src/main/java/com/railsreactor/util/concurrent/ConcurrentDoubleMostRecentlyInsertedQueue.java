@@ -0,0 +1,151 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A thread-safe non-blocking {@code double} specialization of {@link ConcurrentMostRecentlyInsertedQueue}
+ * that never boxes its elements. The values are kept as raw {@code long} bits.
+ * <p>
+ * Iterators and streams are weakly consistent.
+ */
+public class ConcurrentDoubleMostRecentlyInsertedQueue extends PrimitiveSequencedRing {
+    private final AtomicLongArray values;
+
+    public ConcurrentDoubleMostRecentlyInsertedQueue(int capacity) {
+        super(capacity);
+        this.values = new AtomicLongArray(capacity);
+    }
+
+    public void offerDouble(double element) {
+        long position = claimTail();
+        values.lazySet(indexOf(position), Double.doubleToRawLongBits(element));
+        publish(position);
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public double pollDouble() {
+        long position = claimHead();
+        if (position < 0)
+            throw new NoSuchElementException("The queue is empty.");
+
+        return takeValue(position);
+    }
+
+    public double pollDouble(double valueIfEmpty) {
+        long position = claimHead();
+
+        return (position < 0) ? valueIfEmpty : takeValue(position);
+    }
+
+    private double takeValue(long position) {
+        double result = Double.longBitsToDouble(values.get(indexOf(position)));
+        release(position);
+
+        return result;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public double peekDouble() {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                throw new NoSuchElementException("The queue is empty.");
+
+            double result = Double.longBitsToDouble(values.get(indexOf(position)));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    public double peekDouble(double valueIfEmpty) {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                return valueIfEmpty;
+
+            double result = Double.longBitsToDouble(values.get(indexOf(position)));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    /**
+     * Compares elements the way {@link Double#equals(Object)} does, so {@code NaN} is found
+     * and {@code 0.0} and {@code -0.0} are different elements.
+     */
+    public boolean contains(double element) {
+        PrimitiveIterator.OfDouble iterator = iterator();
+        while (iterator.hasNext())
+            if (Double.compare(iterator.nextDouble(), element) == 0)
+                return true;
+
+        return false;
+    }
+
+    public double[] toArray() {
+        return stream().toArray();
+    }
+
+    public PrimitiveIterator.OfDouble iterator() {
+        return new WeaklyConsistentIterator();
+    }
+
+    public DoubleStream stream() {
+        return StreamSupport.doubleStream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.CONCURRENT), false);
+    }
+
+    private final class WeaklyConsistentIterator implements PrimitiveIterator.OfDouble {
+        private long nextPosition = headPosition();
+        private double nextElement;
+        private boolean hasNextElement;
+
+        private WeaklyConsistentIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextElement;
+        }
+
+        @Override
+        public double nextDouble() {
+            if (!hasNextElement)
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            double result = nextElement;
+            nextPosition++;
+            advance();
+
+            return result;
+        }
+
+        private void advance() {
+            hasNextElement = false;
+            nextPosition = Math.max(nextPosition, headPosition());
+
+            for (long end = tailPosition(); nextPosition < end; nextPosition++) {
+                if (isPublished(nextPosition)) {
+                    double element = Double.longBitsToDouble(values.get(indexOf(nextPosition)));
+                    if (isPublished(nextPosition)) {
+                        nextElement = element;
+                        hasNextElement = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A thread-safe non-blocking {@code int} specialization of {@link ConcurrentMostRecentlyInsertedQueue}
+ * that never boxes its elements.
+ * <p>
+ * Iterators and streams are weakly consistent.
+ */
+public class ConcurrentIntMostRecentlyInsertedQueue extends PrimitiveSequencedRing {
+    private final AtomicIntegerArray values;
+
+    public ConcurrentIntMostRecentlyInsertedQueue(int capacity) {
+        super(capacity);
+        this.values = new AtomicIntegerArray(capacity);
+    }
+
+    public void offerInt(int element) {
+        long position = claimTail();
+        values.lazySet(indexOf(position), element);
+        publish(position);
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int pollInt() {
+        long position = claimHead();
+        if (position < 0)
+            throw new NoSuchElementException("The queue is empty.");
+
+        return takeValue(position);
+    }
+
+    public int pollInt(int valueIfEmpty) {
+        long position = claimHead();
+
+        return (position < 0) ? valueIfEmpty : takeValue(position);
+    }
+
+    private int takeValue(long position) {
+        int result = values.get(indexOf(position));
+        release(position);
+
+        return result;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int peekInt() {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                throw new NoSuchElementException("The queue is empty.");
+
+            int result = values.get(indexOf(position));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    public int peekInt(int valueIfEmpty) {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                return valueIfEmpty;
+
+            int result = values.get(indexOf(position));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    public boolean contains(int element) {
+        PrimitiveIterator.OfInt iterator = iterator();
+        while (iterator.hasNext())
+            if (iterator.nextInt() == element)
+                return true;
+
+        return false;
+    }
+
+    public int[] toArray() {
+        return stream().toArray();
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new WeaklyConsistentIterator();
+    }
+
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.CONCURRENT), false);
+    }
+
+    private final class WeaklyConsistentIterator implements PrimitiveIterator.OfInt {
+        private long nextPosition = headPosition();
+        private int nextElement;
+        private boolean hasNextElement;
+
+        private WeaklyConsistentIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextElement;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNextElement)
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            int result = nextElement;
+            nextPosition++;
+            advance();
+
+            return result;
+        }
+
+        private void advance() {
+            hasNextElement = false;
+            nextPosition = Math.max(nextPosition, headPosition());
+
+            for (long end = tailPosition(); nextPosition < end; nextPosition++) {
+                if (isPublished(nextPosition)) {
+                    int element = values.get(indexOf(nextPosition));
+                    if (isPublished(nextPosition)) {
+                        nextElement = element;
+                        hasNextElement = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.LongAggregatingMostRecentlyInsertedQueue;
+import com.railsreactor.util.LongWindowStatistics;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe variant of {@link LongAggregatingMostRecentlyInsertedQueue}.
+ * <p>
+ * Offers and polls update the aggregates in O(1) under a write lock. {@link #statistics()}
+ * reads them optimistically, without taking the lock or blocking the writers, and retries
+ * under a read lock only if a writer intervened. No operation scans the window under the lock
+ * except {@link #toArray()}.
+ */
+public class ConcurrentLongAggregatingMostRecentlyInsertedQueue {
+    private final LongAggregatingMostRecentlyInsertedQueue queue;
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentLongAggregatingMostRecentlyInsertedQueue(int capacity) {
+        this.queue = new LongAggregatingMostRecentlyInsertedQueue(capacity);
+    }
+
+    public int capacity() {
+        return queue.capacity();
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int result = queue.size();
+        if (lock.validate(stamp))
+            return result;
+
+        stamp = lock.readLock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void offerLong(long element) {
+        long stamp = lock.writeLock();
+        try {
+            queue.offerLong(element);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long pollLong() {
+        long stamp = lock.writeLock();
+        try {
+            return queue.pollLong();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long pollLong(long valueIfEmpty) {
+        long stamp = lock.writeLock();
+        try {
+            return queue.pollLong(valueIfEmpty);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            queue.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the aggregates of the elements at one point in time
+     */
+    public LongWindowStatistics statistics() {
+        long stamp = lock.tryOptimisticRead();
+        LongWindowStatistics result = queue.statistics();
+        if (lock.validate(stamp))
+            return result;
+
+        stamp = lock.readLock();
+        try {
+            return queue.statistics();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long[] toArray() {
+        long stamp = lock.readLock();
+        try {
+            return queue.toArray();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long stamp = lock.readLock();
+        try {
+            return queue.toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
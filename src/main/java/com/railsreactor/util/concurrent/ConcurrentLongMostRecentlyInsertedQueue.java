@@ -0,0 +1,147 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A thread-safe non-blocking {@code long} specialization of {@link ConcurrentMostRecentlyInsertedQueue}
+ * that never boxes its elements.
+ * <p>
+ * Iterators and streams are weakly consistent.
+ */
+public class ConcurrentLongMostRecentlyInsertedQueue extends PrimitiveSequencedRing {
+    private final AtomicLongArray values;
+
+    public ConcurrentLongMostRecentlyInsertedQueue(int capacity) {
+        super(capacity);
+        this.values = new AtomicLongArray(capacity);
+    }
+
+    public void offerLong(long element) {
+        long position = claimTail();
+        values.lazySet(indexOf(position), element);
+        publish(position);
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long pollLong() {
+        long position = claimHead();
+        if (position < 0)
+            throw new NoSuchElementException("The queue is empty.");
+
+        return takeValue(position);
+    }
+
+    public long pollLong(long valueIfEmpty) {
+        long position = claimHead();
+
+        return (position < 0) ? valueIfEmpty : takeValue(position);
+    }
+
+    private long takeValue(long position) {
+        long result = values.get(indexOf(position));
+        release(position);
+
+        return result;
+    }
+
+    /**
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public long peekLong() {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                throw new NoSuchElementException("The queue is empty.");
+
+            long result = values.get(indexOf(position));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    public long peekLong(long valueIfEmpty) {
+        for (;;) {
+            long position = publishedHead();
+            if (position < 0)
+                return valueIfEmpty;
+
+            long result = values.get(indexOf(position));
+            if (isHead(position))
+                return result;
+        }
+    }
+
+    public boolean contains(long element) {
+        PrimitiveIterator.OfLong iterator = iterator();
+        while (iterator.hasNext())
+            if (iterator.nextLong() == element)
+                return true;
+
+        return false;
+    }
+
+    public long[] toArray() {
+        return stream().toArray();
+    }
+
+    public PrimitiveIterator.OfLong iterator() {
+        return new WeaklyConsistentIterator();
+    }
+
+    public LongStream stream() {
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.CONCURRENT), false);
+    }
+
+    private final class WeaklyConsistentIterator implements PrimitiveIterator.OfLong {
+        private long nextPosition = headPosition();
+        private long nextElement;
+        private boolean hasNextElement;
+
+        private WeaklyConsistentIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNextElement;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNextElement)
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            long result = nextElement;
+            nextPosition++;
+            advance();
+
+            return result;
+        }
+
+        private void advance() {
+            hasNextElement = false;
+            nextPosition = Math.max(nextPosition, headPosition());
+
+            for (long end = tailPosition(); nextPosition < end; nextPosition++) {
+                if (isPublished(nextPosition)) {
+                    long element = values.get(indexOf(nextPosition));
+                    if (isPublished(nextPosition)) {
+                        nextElement = element;
+                        hasNextElement = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,197 +1,1015 @@
 package com.railsreactor.util.concurrent;
 
-import com.railsreactor.util.MostRecentlyInsertedQueue;
+import com.railsreactor.util.EvictionListener;
 
 import java.util.AbstractQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
 
+/**
+ * A thread-safe non-blocking variant of {@link com.railsreactor.util.MostRecentlyInsertedQueue}.
+ * <p>
+ * Every offered element gets a position (a monotonically growing {@code long}) and is stored in
+ * the slot of that position. The slots are kept in a forward-linked list of chunks: producers
+ * append chunks as the tail advances, and chunks behind the head are dropped for the garbage
+ * collector. A slot serves exactly one position and goes through the states:
+ * <ul>
+ * <li>{@code null} - the position has been claimed by a producer but not published yet;</li>
+ * <li>the element - the element offered at the position;</li>
+ * <li>{@code REMOVED} - the element was removed from the middle of the queue; the slot stays
+ * a <i>hole</i> until the head reaches it;</li>
+ * <li>{@code TAKEN} - the position was taken out at the head.</li>
+ * </ul>
+ * A producer claims its position by an atomic increment of {@code tail}, publishes its element by
+ * a CAS of the slot and then counts it. The count of live elements is kept separately from the
+ * positions, so holes never count against the capacity. If the count exceeds the capacity,
+ * the producer evicts the oldest elements the same way a consumer would poll them. An evicting
+ * producer that finds the head slot claimed but not published does not wait for its producer:
+ * it takes the slot over, and the late producer, whose CAS then fails, reports its own element
+ * as evicted. So no operation ever waits for another thread. Consumers claim positions by
+ * a CAS on {@code head}, skipping the holes.
+ * <p>
+ * Removals never cause evictions. A chunk whose slots have all been removed is unlinked from
+ * the list, and its positions read as holes, so the memory of the queue is bounded by the chunks
+ * that hold live elements, at most one chunk per element, plus the chunks of the head and the tail.
+ * <p>
+ * The capacity can be changed at run time, see {@link #setCapacity(int)}. Since the storage grows
+ * chunk by chunk with the tail, growing allocates nothing up front and copies nothing.
+ * <p>
+ * Linearizability:
+ * <ul>
+ * <li>{@code offer} takes effect when the element is published to its slot. If an evicting producer
+ * takes the slot over first, the offer takes effect at that moment and its element is evicted
+ * at once as the oldest one; the offering thread reports the eviction when it finds its slot taken;</li>
+ * <li>{@code poll} takes effect at the successful CAS of {@code head}. If the head slot has been
+ * claimed by an offer that has not published it yet, {@code poll} returns {@code null} instead
+ * of waiting for that producer, i.e. it behaves as if this and all later offers had not
+ * happened yet;</li>
+ * <li>{@code peek} takes effect when it reads the head element, which is validated
+ * by re-reading {@code head};</li>
+ * <li>{@code size} is exact in a quiescent state. Under concurrent updates it returns a value
+ * between the sizes before and after the overlapping operations, at most the capacity.</li>
+ * </ul>
+ * Iterators and spliterators are weakly consistent: they never throw ConcurrentModificationException
+ * and reflect the elements present at some point at or after their creation. They read the slots
+ * without locking, so a scan never delays producers or consumers. Spliterators split the range of
+ * positions between the head and the tail, so {@code parallelStream()} traverses the queue without
+ * copying it first.
+ */
 public class ConcurrentMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
-    private MostRecentlyInsertedQueue<E> queue;
-    private final Object mutex;
+    private static final int MIN_CHUNK_LENGTH = 32;
+    private static final int MAX_CHUNK_LENGTH = 1024;
+
+    /**
+     * The content of a slot whose element was removed from the middle of the queue.
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * The content of a slot whose position was taken out at the head.
+     */
+    private static final Object TAKEN = new Object();
+
+    /**
+     * The maximum number of live elements.
+     */
+    private volatile int capacity;
+
+    /**
+     * The position of the next element to be polled.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The position the next offered element will be written to.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The number of live elements. A producer counts its element after publishing it, so the count
+     * may exceed the capacity until the producer has evicted the head.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * A chunk at or before the chunk of {@code head}.
+     */
+    private final AtomicReference<Chunk> headChunk;
+
+    /**
+     * A chunk at or before the chunk of the latest published position, at or after {@code headChunk}
+     * unless the producers have been idle while the consumers moved on.
+     */
+    private final AtomicReference<Chunk> tailChunk;
+
+    private final EvictionListener<? super E> evictionListener;
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Receives the operation counts, {@code null} if metrics are disabled.
+     */
+    private final QueueMetrics metrics;
 
     public ConcurrentMostRecentlyInsertedQueue(int capacity) {
-        this.queue = new MostRecentlyInsertedQueue<>(capacity);
-        this.mutex = this;
+        this(capacity, null);
     }
 
-    @Override
-    public boolean add(E e) {
-        synchronized (mutex) {
-            return queue.add(e);
-        }
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}.
+     *                         It is called concurrently by the producers, see {@link BatchingEvictionListener}
+     *                         for delivering the elements in batches off the producer threads.
+     */
+    public ConcurrentMostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, null);
     }
 
-    @Override
-    public E remove() {
-        synchronized (mutex) {
-            return queue.remove();
-        }
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}
+     * @param metrics          receives the counts of offers, evictions, polls and CAS retries,
+     *                         {@code null} to disable metrics
+     */
+    public ConcurrentMostRecentlyInsertedQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                               QueueMetrics metrics) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.capacity = capacity;
+        this.evictionListener = evictionListener;
+        this.metrics = metrics;
+
+        Chunk first = new Chunk(0, chunkLength(capacity));
+        this.headChunk = new AtomicReference<>(first);
+        this.tailChunk = new AtomicReference<>(first);
     }
 
-    @Override
-    public E element() {
-        synchronized (mutex) {
-            return queue.element();
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Changes the capacity without blocking concurrent operations. Growing takes effect immediately
+     * and copies nothing: the chunks appended from then on are sized for the new capacity.
+     * Shrinking takes the oldest elements out until the queue fits the new capacity; they are
+     * returned rather than reported to the eviction listener or counted as evictions.
+     * Elements that offers evict meanwhile to respect the new capacity are reported as usual.
+     *
+     * @return the elements taken out, from the oldest to the newest
+     */
+    public List<E> setCapacity(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.capacity = capacity;
+
+        List<E> result = new ArrayList<>();
+        while (count.get() > this.capacity) {
+            long position = head.get();
+            if (position >= tail.get())
+                break;
+
+            Object taken = takeHead(position);
+            if (taken != null && taken != REMOVED && taken != TAKEN) {
+                @SuppressWarnings("unchecked")
+                E element = (E) taken;
+                result.add(element);
+            }
         }
+
+        return result;
+    }
+
+    /**
+     * @return the number of elements discarded by offer because this queue was full
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
     }
 
     @Override
-    public void clear() {
-        synchronized (mutex) {
-            queue.clear();
-        }
+    public int size() {
+        return Math.max(0, Math.min(capacity, count.get()));
     }
 
     @Override
-    public boolean addAll(Collection<? extends E> c) {
-        synchronized (mutex) {
-            return queue.addAll(c);
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        long position = tail.getAndIncrement();
+        Chunk chunk = chunkFor(position, null);
+        if (publish(chunk, position, element)) {
+            count.incrementAndGet();
+            advance(tailChunk, chunk);
+        } else {
+            evicted(element);
         }
+
+        int casRetries = evictOverflow();
+        if (metrics != null)
+            recordOffers(1, casRetries);
+
+        return true;
     }
 
-    @Override
-    public boolean isEmpty() {
-        synchronized (mutex) {
-            return queue.isEmpty();
+    /**
+     * Stores {@code element} in the claimed slot of {@code position}.
+     *
+     * @return {@code false} if an evicting producer has taken the slot over
+     */
+    private static boolean publish(Chunk chunk, long position, Object element) {
+        // the chunk is a later one if a producer has taken the slot over and the head has left its chunk
+        return position >= chunk.start && chunk.slots.compareAndSet(chunk.indexOf(position), null, element);
+    }
+
+    /**
+     * Evicts the oldest elements while there are more than the capacity. Stops if no position
+     * is left between the head and the tail, as the excess is then due to operations in flight,
+     * which correct the count themselves.
+     *
+     * @return the number of failed attempts to move the head
+     */
+    private int evictOverflow() {
+        int casRetries = 0;
+        while (count.get() > capacity) {
+            long position = head.get();
+            if (position >= tail.get())
+                break;
+
+            if (!evictHead(position))
+                casRetries++;
         }
+
+        return casRetries;
     }
 
+    /**
+     * Adds all elements of {@code collection} in batches, see {@link #offerAll(Object[], int, int)}.
+     */
     @Override
-    public boolean contains(Object obj) {
-        synchronized (mutex) {
-            return queue.contains(obj);
+    public boolean addAll(Collection<? extends E> collection) {
+        if (collection == this)
+            throw new IllegalArgumentException("The queue cannot be added to itself.");
+
+        @SuppressWarnings("unchecked")
+        E[] batch = (E[]) collection.toArray();
+        offerAll(batch, 0, batch.length);
+
+        return batch.length > 0;
+    }
+
+    public void offerAll(E[] batch) {
+        offerAll(batch, 0, batch.length);
+    }
+
+    public void offerAll(List<? extends E> list, int fromIndex, int toIndex) {
+        @SuppressWarnings("unchecked")
+        E[] batch = (E[]) list.subList(fromIndex, toIndex).toArray();
+        offerAll(batch, 0, batch.length);
+    }
+
+    /**
+     * Offers {@code length} elements of {@code batch} starting at {@code offset}, with the same result
+     * as offering them one by one: if the batch is larger than the capacity, only its last
+     * {@code capacity} elements are kept, the others are counted and reported as evicted.
+     * <p>
+     * The kept elements claim their positions by a single increment of {@code tail}, so they are
+     * adjacent in the queue, and are counted by a single update once all of them are published.
+     *
+     * @throws NullPointerException if the batch contains a null element; the queue is not modified then
+     */
+    public void offerAll(E[] batch, int offset, int length) {
+        if (offset < 0 || length < 0 || length > batch.length - offset)
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length +
+                    ", array length " + batch.length);
+        for (int i = offset; i < offset + length; i++)
+            if (batch[i] == null)
+                throw new NullPointerException("This queue does NOT support null elements.");
+
+        int skippedCount = Math.max(0, length - capacity);
+        int keptCount = length - skippedCount;
+        int casRetries = 0;
+
+        if (keptCount > 0) {
+            long position = tail.getAndAdd(keptCount);
+            Chunk chunk = null;
+            int publishedCount = 0;
+            for (int i = 0; i < keptCount; i++) {
+                E element = batch[offset + skippedCount + i];
+                chunk = chunkFor(position + i, chunk);
+                if (publish(chunk, position + i, element))
+                    publishedCount++;
+                else
+                    evicted(element);
+            }
+
+            count.addAndGet(publishedCount);
+            advance(tailChunk, chunk);
+            casRetries = evictOverflow();
+        }
+
+        if (metrics != null)
+            recordOffers(length, casRetries);
+
+        if (skippedCount > 0) {
+            evictionCount.add(skippedCount);
+            if (metrics != null)
+                metrics.recordEvictions(skippedCount);
+            if (evictionListener != null)
+                for (int i = offset; i < offset + skippedCount; i++)
+                    evictionListener.onEviction(batch[i]);
         }
     }
 
-    @Override
-    public Object[] toArray() {
-        synchronized (mutex) {
-            return queue.toArray();
+    private void recordOffers(int count, int casRetries) {
+        metrics.recordOffers(count);
+        if (casRetries > 0)
+            metrics.recordCasRetries(casRetries);
+    }
+
+    /**
+     * Discards the element at {@code position} if it is still the head of this queue, reclaims
+     * the hole there, or takes the slot over from its producer if it is not published yet.
+     *
+     * @return {@code false} if another thread has moved the head first
+     */
+    private boolean evictHead(long position) {
+        Object taken = takeHead(position);
+        if (taken == null)
+            return false;
+
+        if (taken != REMOVED && taken != TAKEN) {
+            @SuppressWarnings("unchecked")
+            E element = (E) taken;
+            evicted(element);
         }
+
+        return true;
+    }
+
+    private void evicted(E element) {
+        evictionCount.increment();
+        if (metrics != null)
+            metrics.recordEvictions(1);
+        if (evictionListener != null)
+            evictionListener.onEviction(element);
+    }
+
+    /**
+     * Takes out the slot at {@code position} if it is still the head, whether it is published or not.
+     *
+     * @return the element, {@code REMOVED} if the slot was a hole, {@code TAKEN} if it was taken over
+     * from its producer, or {@code null} if another thread has moved the head first
+     */
+    private Object takeHead(long position) {
+        if (position >= tail.get())
+            return null;
+
+        Chunk chunk = chunkFor(position, null);
+        if (position < chunk.start)
+            return skipReclaimedHoles(position, chunk) ? REMOVED : null;
+
+        Object slot = chunk.slots.get(chunk.indexOf(position));
+        if (slot == TAKEN || !head.compareAndSet(position, position + 1))
+            return null;
+
+        return release(chunk, position);
+    }
+
+    /**
+     * Moves the head from {@code position}, which is in an unlinked chunk of holes,
+     * to the start of {@code chunk}, the first chunk after it.
+     *
+     * @return whether the head was moved by this call
+     */
+    private boolean skipReclaimedHoles(long position, Chunk chunk) {
+        if (!head.compareAndSet(position, chunk.start))
+            return false;
+
+        advance(headChunk, chunk);
+        return true;
+    }
+
+    /**
+     * Takes the content out of the slot of {@code position}, which the caller has claimed
+     * by moving {@code head} past it, and decrements the count if it was an element.
+     *
+     * @return the content, {@code TAKEN} if the slot had not been published
+     */
+    private Object release(Chunk chunk, long position) {
+        if (position + 1 == chunk.end)
+            advance(headChunk, next(chunk));
+
+        // getAndSet, because a concurrent remove may replace the element with REMOVED up to this point
+        // and the producer of an unpublished slot may publish it
+        Object result = chunk.slots.getAndSet(chunk.indexOf(position), TAKEN);
+        if (result == null)
+            return TAKEN;
+        if (result != REMOVED)
+            count.decrementAndGet();
+
+        return result;
     }
 
     @Override
-    public <T> T[] toArray(T[] a) {
-        synchronized (mutex) {
-            return queue.toArray(a);
+    public E poll() {
+        return poll(true);
+    }
+
+    /**
+     * Polls without reporting the hit or miss to the metrics, CAS retries are still reported.
+     * Used by the blocking operations, which may poll several times and report their result once.
+     */
+    E pollUnrecorded() {
+        return poll(false);
+    }
+
+    private E poll(boolean recordPoll) {
+        int casRetries = 0;
+        for (;;) {
+            long position = head.get();
+            if (position >= tail.get())
+                return pollMiss(recordPoll, casRetries);
+
+            Chunk chunk = chunkFor(position, null);
+            if (position < chunk.start) {
+                skipReclaimedHoles(position, chunk);
+                continue;
+            }
+
+            Object slot = chunk.slots.get(chunk.indexOf(position));
+            if (slot == null)
+                return pollMiss(recordPoll, casRetries);
+
+            if (slot != TAKEN) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Object element = release(chunk, position);
+                    if (element != REMOVED) {
+                        if (metrics != null)
+                            recordPolls(recordPoll, 1, casRetries);
+                        @SuppressWarnings("unchecked")
+                        E result = (E) element;
+                        return result;
+                    }
+                } else {
+                    casRetries++;
+                }
+            }
         }
     }
 
-    @Override
-    public boolean remove(Object obj) {
-        synchronized (mutex) {
-            return queue.remove(obj);
+    private E pollMiss(boolean recordPoll, int casRetries) {
+        if (metrics != null)
+            recordPolls(recordPoll, 0, casRetries);
+
+        return null;
+    }
+
+    private void recordPolls(boolean recordPoll, int hits, int casRetries) {
+        if (recordPoll)
+            metrics.recordPolls(hits, (hits == 0) ? 1 : 0);
+        if (casRetries > 0)
+            metrics.recordCasRetries(casRetries);
+    }
+
+    /**
+     * Takes out the head element if it is {@code expected}.
+     *
+     * @return whether {@code expected} was taken out by this call
+     */
+    boolean pollHead(E expected) {
+        for (;;) {
+            long position = head.get();
+            if (position >= tail.get())
+                return false;
+
+            Chunk chunk = chunkFor(position, null);
+            if (position < chunk.start) {
+                skipReclaimedHoles(position, chunk);
+                continue;
+            }
+
+            Object slot = chunk.slots.get(chunk.indexOf(position));
+            if (slot == null)
+                return false;
+
+            if (slot == REMOVED) {
+                if (head.compareAndSet(position, position + 1))
+                    release(chunk, position);
+
+            } else if (slot != TAKEN) {
+                if (slot != expected)
+                    return false;
+
+                if (head.compareAndSet(position, position + 1)) {
+                    // the element may have been removed between the read and the CAS
+                    return release(chunk, position) == expected;
+                }
+            }
         }
     }
 
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        synchronized (mutex) {
-            return queue.containsAll(c);
+    /**
+     * Moves up to {@code maxElements} elements from the head of this queue to {@code target}.
+     * The whole run of published head slots is claimed by a single CAS of {@code head} and
+     * copied out before any of the elements is added to {@code target}.
+     *
+     * @return the number of elements added to {@code target}
+     */
+    int drainBatch(Collection<? super E> target, int maxElements) {
+        return drainBatch(target, maxElements, true);
+    }
+
+    /**
+     * Drains as {@link #drainBatch} does but does not report a miss if nothing is left,
+     * for an operation that has already taken and reported an element.
+     */
+    int drainRemaining(Collection<? super E> target, int maxElements) {
+        return drainBatch(target, maxElements, false);
+    }
+
+    private int drainBatch(Collection<? super E> target, int maxElements, boolean recordMiss) {
+        if (target == this)
+            throw new IllegalArgumentException("The queue cannot be drained to itself.");
+
+        int drained = 0;
+        int casRetries = 0;
+        while (drained < maxElements) {
+            long start = head.get();
+            Chunk startChunk = chunkFor(start, null);
+            if (start < startChunk.start) {
+                skipReclaimedHoles(start, startChunk);
+                continue;
+            }
+
+            int runLength = countPublishedSlots(startChunk, start, maxElements - drained);
+            if (runLength == 0) {
+                if (start >= tail.get() || startChunk.slots.get(startChunk.indexOf(start)) == null)
+                    break;
+                continue;
+            }
+
+            if (head.compareAndSet(start, start + runLength)) {
+                Object[] batch = new Object[runLength];
+                int batchSize = 0;
+                Chunk chunk = startChunk;
+                for (int i = 0; i < runLength; i++) {
+                    chunk = chunkFor(start + i, chunk);
+                    Object element = release(chunk, start + i);
+                    if (element != REMOVED)
+                        batch[batchSize++] = element;
+                }
+
+                for (int i = 0; i < batchSize; i++) {
+                    @SuppressWarnings("unchecked")
+                    E element = (E) batch[i];
+                    target.add(element);
+                }
+                drained += batchSize;
+
+            } else {
+                casRetries++;
+            }
         }
+
+        if (metrics != null)
+            recordPolls(recordMiss || drained > 0, drained, casRetries);
+
+        return drained;
     }
 
-    @Override
-    public boolean removeAll(Collection<?> c) {
-        synchronized (mutex) {
-            return queue.removeAll(c);
+    private int countPublishedSlots(Chunk chunk, long start, int maxCount) {
+        long end = tail.get();
+        int limit = (int) Math.min(maxCount, end - start);
+        int count = 0;
+
+        while (count < limit) {
+            chunk = chunkFor(start + count, chunk);
+            if (start + count < chunk.start)
+                break;
+
+            Object slot = chunk.slots.get(chunk.indexOf(start + count));
+            if (slot == null || slot == TAKEN)
+                break;
+            count++;
         }
+
+        return count;
     }
 
     @Override
-    public boolean retainAll(Collection<?> c) {
-        synchronized (mutex) {
-            return queue.retainAll(c);
+    public E peek() {
+        for (;;) {
+            long position = head.get();
+            if (position >= tail.get())
+                return null;
+
+            Chunk chunk = chunkFor(position, null);
+            if (position < chunk.start) {
+                skipReclaimedHoles(position, chunk);
+                continue;
+            }
+
+            Object slot = chunk.slots.get(chunk.indexOf(position));
+            if (slot == null)
+                return null;
+
+            if (slot == REMOVED) {
+                // a hole has reached the head
+                if (head.compareAndSet(position, position + 1))
+                    release(chunk, position);
+
+            } else if (slot != TAKEN && head.get() == position) {
+                @SuppressWarnings("unchecked")
+                E element = (E) slot;
+                return element;
+            }
         }
     }
 
     @Override
-    public String toString() {
-        synchronized (mutex) {
-            return queue.toString();
+    public boolean contains(Object obj) {
+        if (obj != null) {
+            Chunk chunk = null;
+            for (long position = head.get(), end = tail.get(); position < end; position++) {
+                chunk = chunkFor(position, chunk);
+                if (position < chunk.start) {
+                    position = chunk.start - 1;
+                    continue;
+                }
+
+                E element = elementAt(chunk, position);
+                if (element != null && obj.equals(element))
+                    return true;
+            }
         }
+
+        return false;
     }
 
     @Override
-    public int hashCode() {
-        synchronized (mutex) {
-            return queue.hashCode();
+    public boolean remove(Object obj) {
+        if (obj != null) {
+            Chunk chunk = null;
+            for (long position = head.get(), end = tail.get(); position < end; position++) {
+                chunk = chunkFor(position, chunk);
+                if (position < chunk.start) {
+                    position = chunk.start - 1;
+                    continue;
+                }
+
+                E element = elementAt(chunk, position);
+                if (element != null && obj.equals(element) && removeAt(chunk, position, element))
+                    return true;
+            }
         }
+
+        return false;
     }
 
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
+    /**
+     * Replaces {@code element} in the slot of {@code position} with a hole that is reclaimed when it
+     * reaches the head, or earlier together with its chunk if the chunk is left with holes only.
+     * The element stops counting against the capacity immediately.
+     */
+    private boolean removeAt(Chunk chunk, long position, E element) {
+        if (chunk.slots.compareAndSet(chunk.indexOf(position), element, REMOVED)) {
+            count.decrementAndGet();
+
+            // the chunk is unlinked here if it has a successor, otherwise when the successor is appended
+            if (chunk.removedCount.incrementAndGet() == chunk.slots.length() && chunk.next.get() != null)
+                unlinkHoleChunks();
             return true;
-        synchronized (mutex) {
-            return queue.equals(obj);
         }
+
+        return false;
     }
 
-    @Override
-    public Iterator<E> iterator() {
-        return queue.iterator(); // must be synchronized by user
+    /**
+     * Unlinks the chunks between the head and the tail whose slots have all been removed, except
+     * the last chunk. Their positions read as holes from then on, see {@link #chunkFor}.
+     * The chunks of a concurrent call may be left linked and are unlinked by a later call.
+     */
+    private void unlinkHoleChunks() {
+        Chunk chunk = headChunk.get();
+        for (;;) {
+            Chunk next = chunk.next.get();
+            if (next == null)
+                return;
+
+            Chunk following = next.next.get();
+            if (following != null && next.hasHolesOnly())
+                chunk.next.compareAndSet(next, following);
+            else
+                chunk = next;
+        }
     }
 
-    @Override
-    public void forEach(Consumer<? super E> action) {
-        synchronized (mutex) {
-            queue.forEach(action);
+    /**
+     * Returns the element published at {@code position} or {@code null} if there is no such element
+     * (the position has already been taken out, has not been published yet or was removed).
+     */
+    private E elementAt(Chunk chunk, long position) {
+        Object slot = chunk.slots.get(chunk.indexOf(position));
+        if (slot == REMOVED || slot == TAKEN)
+            return null;
+
+        @SuppressWarnings("unchecked")
+        E element = (E) slot;
+        return element;
+    }
+
+    /**
+     * Finds the chunk of {@code position}, appending chunks if the position is beyond the last one.
+     * If the chunk of the position has been dropped behind the head or unlinked because it held
+     * holes only, returns a later chunk, whose start is then greater than the position: the positions
+     * before it have been taken out or are holes.
+     *
+     * @param hint a chunk at or before the chunk of {@code position} to start from, may be {@code null}
+     */
+    private Chunk chunkFor(long position, Chunk hint) {
+        Chunk chunk = hint;
+
+        if (chunk == null || position < chunk.start) {
+            chunk = tailChunk.get();
+            if (position < chunk.start) {
+                chunk = headChunk.get();
+                if (position < chunk.start)
+                    return chunk;
+            }
         }
+
+        while (position >= chunk.end)
+            chunk = next(chunk);
+
+        return chunk;
     }
 
-    @Override
-    public boolean removeIf(Predicate<? super E> filter) {
-        synchronized (mutex) {
-            return queue.removeIf(filter);
+    /**
+     * @return the chunk following {@code chunk}, appending it with a length fit for the capacity if there is none
+     */
+    private Chunk next(Chunk chunk) {
+        Chunk result = chunk.next.get();
+        if (result == null) {
+            Chunk appended = new Chunk(chunk.end, chunkLength(capacity));
+            if (chunk.next.compareAndSet(null, appended)) {
+                result = appended;
+                if (chunk.hasHolesOnly())
+                    unlinkHoleChunks();
+            } else {
+                result = chunk.next.get();
+            }
         }
+
+        return result;
     }
 
-    @Override
-    public Spliterator<E> spliterator() {
-        return queue.spliterator(); // must be synchronized by user
+    /**
+     * @return the number of chunks linked from the head chunk, for tests
+     */
+    int linkedChunkCount() {
+        int result = 0;
+        for (Chunk chunk = headChunk.get(); chunk != null; chunk = chunk.next.get())
+            result++;
+
+        return result;
     }
 
-    @Override
-    public Stream<E> stream() {
-        return queue.stream(); // must be synchronized by user
+    private static void advance(AtomicReference<Chunk> reference, Chunk chunk) {
+        for (;;) {
+            Chunk current = reference.get();
+            if (current.start >= chunk.start || reference.compareAndSet(current, chunk))
+                return;
+        }
+    }
+
+    private static int chunkLength(int capacity) {
+        return Math.min(MAX_CHUNK_LENGTH, Math.max(MIN_CHUNK_LENGTH, capacity));
     }
 
     @Override
-    public Stream<E> parallelStream() {
-        return queue.parallelStream(); // must be synchronized by user
+    public Object[] toArray() {
+        return snapshot().toArray();
     }
 
     @Override
-    public int size() {
-        synchronized (mutex) {
-            return queue.size();
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    private List<E> snapshot() {
+        List<E> result = new ArrayList<>(size());
+
+        Chunk chunk = null;
+        for (long position = head.get(), end = tail.get(); position < end; position++) {
+            chunk = chunkFor(position, chunk);
+            if (position < chunk.start) {
+                position = chunk.start - 1;
+                continue;
+            }
+
+            E element = elementAt(chunk, position);
+            if (element != null)
+                result.add(element);
         }
+
+        return result;
     }
 
     @Override
-    public boolean offer(E e) {
-        synchronized (mutex) {
-            return queue.offer(e);
+    public Iterator<E> iterator() {
+        return new WeaklyConsistentIterator();
+    }
+
+    private final class WeaklyConsistentIterator implements Iterator<E> {
+        private long nextPosition;
+        private Chunk nextChunk;
+        private E nextElement;
+        private long lastReturnedPosition = -1;
+        private Chunk lastReturnedChunk;
+        private E lastReturnedElement;
+
+        private WeaklyConsistentIterator() {
+            nextPosition = head.get();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElement != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextElement == null)
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            lastReturnedPosition = nextPosition;
+            lastReturnedChunk = nextChunk;
+            lastReturnedElement = nextElement;
+            nextPosition++;
+            advance();
+
+            return lastReturnedElement;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturnedElement == null)
+                throw new IllegalStateException("next() hasn't yet been called, or " +
+                        "remove() has been called twice");
+
+            removeAt(lastReturnedChunk, lastReturnedPosition, lastReturnedElement);
+            lastReturnedElement = null;
+        }
+
+        private void advance() {
+            nextElement = null;
+            nextPosition = Math.max(nextPosition, head.get());
+
+            for (long end = tail.get(); nextPosition < end; nextPosition++) {
+                nextChunk = chunkFor(nextPosition, nextChunk);
+                if (nextPosition < nextChunk.start) {
+                    nextPosition = nextChunk.start - 1;
+                    continue;
+                }
+
+                E element = elementAt(nextChunk, nextPosition);
+                if (element != null) {
+                    nextElement = element;
+                    return;
+                }
+            }
         }
     }
 
     @Override
-    public E poll() {
-        synchronized (mutex) {
-            return queue.poll();
+    public Spliterator<E> spliterator() {
+        return new PositionRangeSpliterator(-1, -1);
+    }
+
+    /**
+     * Traverses the positions {@code [position, end)}. An unbound spliterator covers
+     * the range between the head and the tail at its first use.
+     */
+    private final class PositionRangeSpliterator implements Spliterator<E> {
+        private long position;
+        private long end;
+        private Chunk chunk;
+
+        private PositionRangeSpliterator(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        private void bind() {
+            if (end < 0) {
+                position = head.get();
+                end = tail.get();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            bind();
+
+            // positions before the head have been taken out already
+            for (position = Math.max(position, head.get()); position < end; ) {
+                E element = nextElement();
+                if (element != null) {
+                    action.accept(element);
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null)
+                throw new NullPointerException();
+            bind();
+
+            for (position = Math.max(position, head.get()); position < end; ) {
+                E element = nextElement();
+                if (element != null)
+                    action.accept(element);
+            }
+        }
+
+        private E nextElement() {
+            chunk = chunkFor(position, chunk);
+            if (position < chunk.start) {
+                position = chunk.start;
+                return null;
+            }
+
+            long current = position++;
+
+            return elementAt(chunk, current);
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            bind();
+
+            long start = Math.max(position, head.get());
+            long middle = (start + end) >>> 1;
+            if (middle <= start)
+                return null;
+
+            position = middle;
+            return new PositionRangeSpliterator(start, middle);
+        }
+
+        @Override
+        public long estimateSize() {
+            return (end < 0) ? size() : Math.max(0, end - position);
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.ORDERED;
         }
     }
 
-    @Override
-    public E peek() {
-        synchronized (mutex) {
-            return queue.peek();
+    /**
+     * The slots of the positions {@code [start, end)}.
+     */
+    private static final class Chunk {
+        private final long start;
+        private final long end;
+        private final AtomicReferenceArray<Object> slots;
+        private final AtomicReference<Chunk> next = new AtomicReference<>();
+
+        /**
+         * The number of slots whose element has been removed from the middle of the queue.
+         */
+        private final AtomicInteger removedCount = new AtomicInteger();
+
+        private Chunk(long start, int length) {
+            this.start = start;
+            this.end = start + length;
+            this.slots = new AtomicReferenceArray<>(length);
+        }
+
+        private int indexOf(long position) {
+            return (int) (position - start);
+        }
+
+        private boolean hasHolesOnly() {
+            return removedCount.get() == slots.length();
         }
     }
 }
@@ -0,0 +1,174 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.EvictionListener;
+import com.railsreactor.util.Ticker;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe non-blocking variant of {@link com.railsreactor.util.TimeWindowedMostRecentlyInsertedQueue}
+ * built on {@link ConcurrentMostRecentlyInsertedQueue}.
+ * <p>
+ * Expired elements are discarded from the head, each by a single CAS, so concurrent readers never
+ * scan the window. {@code poll} checks the age of the element it has taken out and discards it if it
+ * has expired. Producers stamp their elements before claiming a slot, so elements offered concurrently
+ * may be stamped slightly out of order; such an element stays until it reaches the head.
+ * <p>
+ * Iterators and spliterators are weakly consistent.
+ */
+public class ConcurrentTimeWindowedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+    private final ConcurrentMostRecentlyInsertedQueue<Timestamped<E>> entries;
+    private final long maxAgeNanos;
+    private final Ticker ticker;
+    private final EvictionListener<? super E> evictionListener;
+    private final LongAdder expirationCount = new LongAdder();
+
+    public ConcurrentTimeWindowedMostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit) {
+        this(capacity, maxAge, unit, Ticker.systemTicker(), null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full or because
+     *                         they expired, may be {@code null}. It is called concurrently.
+     */
+    public ConcurrentTimeWindowedMostRecentlyInsertedQueue(int capacity, long maxAge, TimeUnit unit, Ticker ticker,
+                                                           EvictionListener<? super E> evictionListener) {
+        if (maxAge <= 0) throw new IllegalArgumentException("Maximum age must be positive.");
+        if (ticker == null)
+            throw new NullPointerException();
+
+        this.entries = new ConcurrentMostRecentlyInsertedQueue<>(capacity, (evictionListener == null) ? null
+                : entry -> evictionListener.onEviction(entry.element));
+        this.maxAgeNanos = unit.toNanos(maxAge);
+        this.ticker = ticker;
+        this.evictionListener = evictionListener;
+    }
+
+    public int capacity() {
+        return entries.capacity();
+    }
+
+    public long maxAge(TimeUnit unit) {
+        return unit.convert(maxAgeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of elements discarded by offer because this queue was full
+     */
+    public long evictionCount() {
+        return entries.evictionCount();
+    }
+
+    /**
+     * @return the number of elements discarded because they were older than {@code maxAge}
+     */
+    public long expirationCount() {
+        return expirationCount.sum();
+    }
+
+    @Override
+    public int size() {
+        expire(ticker.read());
+        return entries.size();
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        long now = ticker.read();
+        expire(now);
+
+        return entries.offer(new Timestamped<>(element, now));
+    }
+
+    @Override
+    public E poll() {
+        long now = ticker.read();
+
+        Timestamped<E> entry;
+        while ((entry = entries.poll()) != null) {
+            if (!isExpired(entry, now))
+                return entry.element;
+
+            onExpiration(entry);
+        }
+
+        return null;
+    }
+
+    @Override
+    public E peek() {
+        expire(ticker.read());
+        Timestamped<E> entry = entries.peek();
+
+        return (entry == null) ? null : entry.element;
+    }
+
+    private void expire(long now) {
+        Timestamped<E> entry;
+        while ((entry = entries.peek()) != null && isExpired(entry, now)) {
+            if (entries.pollHead(entry))
+                onExpiration(entry);
+        }
+    }
+
+    private boolean isExpired(Timestamped<E> entry, long now) {
+        return now - entry.timestamp >= maxAgeNanos;
+    }
+
+    private void onExpiration(Timestamped<E> entry) {
+        expirationCount.increment();
+        if (evictionListener != null)
+            evictionListener.onEviction(entry.element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        expire(ticker.read());
+        final Iterator<Timestamped<E>> entryIterator = entries.iterator();
+
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return entryIterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return entryIterator.next().element;
+            }
+
+            @Override
+            public void remove() {
+                entryIterator.remove();
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.ORDERED);
+    }
+
+    /**
+     * An element stamped with its offer time. Entries compare by identity,
+     * so the ring removes exactly the entry it is given.
+     */
+    private static final class Timestamped<E> {
+        private final E element;
+        private final long timestamp;
+
+        private Timestamped(E element, long timestamp) {
+            this.element = element;
+            this.timestamp = timestamp;
+        }
+    }
+}
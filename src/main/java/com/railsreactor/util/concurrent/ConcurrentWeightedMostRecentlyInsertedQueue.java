@@ -0,0 +1,188 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.EvictionListener;
+import com.railsreactor.util.Weigher;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe non-blocking variant of {@link com.railsreactor.util.WeightedMostRecentlyInsertedQueue}.
+ * <p>
+ * The number of elements is not bounded, so they are kept in a {@link ConcurrentLinkedQueue} together
+ * with their weights. A producer adds the weight of its element to the total before linking the element
+ * and then evicts from the head while the total exceeds {@code maxWeight}, so the total never under-reports
+ * the elements in the queue. Under concurrent offers the total may exceed {@code maxWeight} by the weight of
+ * the offers in flight, and a racing producer may evict one element more than necessary.
+ * <p>
+ * Iterators and spliterators are weakly consistent.
+ */
+public class ConcurrentWeightedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+    private final long maxWeight;
+    private final Weigher<? super E> weigher;
+    private final ConcurrentLinkedQueue<Weighted<E>> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final EvictionListener<? super E> evictionListener;
+    private final LongAdder evictionCount = new LongAdder();
+
+    public ConcurrentWeightedMostRecentlyInsertedQueue(long maxWeight, Weigher<? super E> weigher) {
+        this(maxWeight, weigher, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the total weight exceeded
+     *                         {@code maxWeight}, may be {@code null}. It is called concurrently by the producers.
+     */
+    public ConcurrentWeightedMostRecentlyInsertedQueue(long maxWeight, Weigher<? super E> weigher,
+                                                       EvictionListener<? super E> evictionListener) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("Maximum weight must be positive.");
+        if (weigher == null)
+            throw new NullPointerException();
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the total weight of the elements in this queue, including the offers in flight
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * @return the number of elements discarded by offer because the total weight exceeded {@code maxWeight}
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the weight of {@code element} is negative or exceeds {@code maxWeight}
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        int elementWeight = weigher.weigh(element);
+        if (elementWeight < 0)
+            throw new IllegalArgumentException("Element weight must not be negative.");
+        if (elementWeight > maxWeight)
+            throw new IllegalArgumentException("Element weight " + elementWeight +
+                    " exceeds the maximum weight " + maxWeight + ".");
+
+        weight.addAndGet(elementWeight);
+        entries.offer(new Weighted<>(element, elementWeight));
+        size.incrementAndGet();
+
+        while (weight.get() > maxWeight) {
+            Weighted<E> evicted = takeHead();
+            if (evicted == null)
+                break;
+
+            evictionCount.increment();
+            if (evictionListener != null)
+                evictionListener.onEviction(evicted.element);
+        }
+
+        return true;
+    }
+
+    private Weighted<E> takeHead() {
+        Weighted<E> entry = entries.poll();
+        if (entry != null)
+            unaccount(entry);
+
+        return entry;
+    }
+
+    private void unaccount(Weighted<E> entry) {
+        size.decrementAndGet();
+        weight.addAndGet(-entry.weight);
+    }
+
+    @Override
+    public E poll() {
+        Weighted<E> entry = takeHead();
+
+        return (entry == null) ? null : entry.element;
+    }
+
+    @Override
+    public E peek() {
+        Weighted<E> entry = entries.peek();
+
+        return (entry == null) ? null : entry.element;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<Weighted<E>> entryIterator = entries.iterator();
+
+        return new Iterator<E>() {
+            private Weighted<E> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return entryIterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                lastReturned = entryIterator.next();
+                return lastReturned.element;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null)
+                    throw new IllegalStateException("next() hasn't yet been called, or " +
+                            "remove() has been called twice");
+
+                // only the thread that unlinks the entry accounts for it
+                if (entries.remove(lastReturned))
+                    unaccount(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.ORDERED);
+    }
+
+    /**
+     * An element with the weight it had when it was offered. Entries compare by identity,
+     * so removing an entry unlinks exactly that entry.
+     */
+    private static final class Weighted<E> {
+        private final E element;
+        private final int weight;
+
+        private Weighted(E element, int weight) {
+            this.element = element;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher that fans submitted items out to subscribers running at different speeds, keeping for
+ * every subscriber only the {@code bufferCapacity} most recent items it has not received yet. A slow
+ * subscriber therefore skips the older items instead of building up a backlog.
+ * <p>
+ * {@link Subscriber} and {@link Subscription} have the methods and the contract of their counterparts
+ * in {@code java.util.concurrent.Flow} (and Reactive Streams), which this Java 8 library cannot refer to.
+ * <p>
+ * No thread is dedicated to a subscriber. Items are delivered by tasks run on the given {@link Executor}
+ * only while a subscriber has both demand and buffered items. A task hands over up to {@code maxBatchSize}
+ * items, taken out of the subscriber's {@link ConcurrentMostRecentlyInsertedQueue} buffer by a single CAS,
+ * and then resubmits itself if there is more to deliver. At most one task runs per subscriber, so its
+ * signals are never concurrent. If the executor rejects a task, the items stay buffered and the next
+ * {@code submit} or {@code request} of the subscriber tries to schedule the delivery again.
+ * <p>
+ * On Java 9+ {@code FlowAdapters.toFlowPublisher} exposes a publisher as a
+ * {@code java.util.concurrent.Flow.Publisher}.
+ */
+public class ConflatingPublisher<E> implements AutoCloseable {
+
+    /**
+     * Mirrors {@code java.util.concurrent.Flow.Subscriber}.
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Mirrors {@code java.util.concurrent.Flow.Subscription}.
+     */
+    public interface Subscription {
+
+        void request(long n);
+
+        void cancel();
+    }
+
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final int maxBatchSize;
+    private final List<ConflatingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed;
+    private volatile Throwable closingError;
+
+    /**
+     * @param bufferCapacity the number of most recent items kept for a subscriber that has no demand
+     * @param maxBatchSize   the maximum number of items a delivery task hands over before it resubmits itself
+     */
+    public ConflatingPublisher(Executor executor, int bufferCapacity, int maxBatchSize) {
+        if (bufferCapacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("Batch size must be positive.");
+        if (executor == null)
+            throw new NullPointerException();
+
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the executor rejects the task signalling {@code onSubscribe};
+     *                                    the subscriber is not subscribed then
+     */
+    public void subscribe(Subscriber<? super E> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException();
+
+        ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+        subscriptions.add(subscription);
+        if (!subscription.scheduleDelivery()) {
+            subscriptions.remove(subscription);
+            throw new RejectedExecutionException("The executor rejected the subscription.");
+        }
+    }
+
+    /**
+     * Publishes {@code item} to every current subscriber, evicting the oldest undelivered item
+     * of the subscribers whose buffers are full.
+     *
+     * @throws IllegalStateException if this publisher has been closed
+     */
+    public void submit(E item) {
+        if (item == null)
+            throw new NullPointerException("This publisher does NOT support null items.");
+        if (closed)
+            throw new IllegalStateException("The publisher has been closed.");
+
+        for (ConflatingSubscription subscription : subscriptions) {
+            subscription.buffer.offer(item);
+
+            // request() increments the demand before it checks the buffer
+            if (subscription.demand.get() > 0)
+                subscription.scheduleDelivery();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Completes every subscriber once it has received its buffered items.
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for (ConflatingSubscription subscription : subscriptions)
+            subscription.scheduleDelivery();
+    }
+
+    /**
+     * Signals {@code error} to every subscriber, discarding the items not delivered yet.
+     */
+    public void closeExceptionally(Throwable error) {
+        if (error == null)
+            throw new NullPointerException();
+
+        if (!closed) {
+            closingError = error;
+            close();
+        }
+    }
+
+    private final class ConflatingSubscription implements Subscription {
+        private final Subscriber<? super E> subscriber;
+        private final ConcurrentMostRecentlyInsertedQueue<E> buffer;
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * The number of times delivery was requested since the running task last checked;
+         * a task is running or scheduled while it is not zero.
+         */
+        private final AtomicInteger pendingDeliveries = new AtomicInteger();
+
+        private final List<E> batch = new ArrayList<>();
+        private boolean subscribed;
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+
+        private ConflatingSubscription(Subscriber<? super E> subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new ConcurrentMostRecentlyInsertedQueue<>(bufferCapacity);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                requestError = new IllegalArgumentException("Requested " + n + " items, must be positive.");
+            else
+                demand.getAndAccumulate(n, (current, added) -> (current + added < 0) ? Long.MAX_VALUE : current + added);
+
+            scheduleDelivery();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * @return {@code false} if the executor has rejected the delivery task
+         */
+        private boolean scheduleDelivery() {
+            return pendingDeliveries.getAndIncrement() != 0 || execute();
+        }
+
+        private boolean execute() {
+            try {
+                executor.execute(this::deliver);
+                return true;
+
+            } catch (RejectedExecutionException e) {
+                // no task is running, the items stay buffered for the next scheduleDelivery
+                pendingDeliveries.set(0);
+                return false;
+            }
+        }
+
+        private void deliver() {
+            int missed = 1;
+            int delivered = 0;
+
+            for (;;) {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+
+                if (cancelled || terminateIfDone())
+                    return;
+
+                long requested = demand.get();
+                int batchSize = (int) Math.min(requested, maxBatchSize - delivered);
+
+                if (batchSize > 0) {
+                    batch.clear();
+                    int drained = buffer.drainBatch(batch, batchSize);
+
+                    if (drained > 0) {
+                        if (requested != Long.MAX_VALUE)
+                            demand.addAndGet(-drained);
+                        if (!emit())
+                            return;
+
+                        delivered += drained;
+                        continue;
+                    }
+                }
+
+                if (delivered == maxBatchSize && requested > 0 && !buffer.isEmpty()) {
+                    // give the other tasks of the executor a turn, pendingDeliveries stays positive
+                    execute();
+                    return;
+                }
+
+                missed = pendingDeliveries.addAndGet(-missed);
+                if (missed == 0)
+                    return;
+            }
+        }
+
+        /**
+         * @return whether all items were handed over; {@code false} if the subscriber has thrown
+         */
+        private boolean emit() {
+            try {
+                for (E item : batch) {
+                    if (cancelled)
+                        return false;
+                    subscriber.onNext(item);
+                }
+                return true;
+
+            } catch (RuntimeException e) {
+                // a subscriber must not throw, this one is cut off (Reactive Streams rule 2.13)
+                cancel();
+                return false;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        /**
+         * Signals {@code onError} or {@code onComplete} if this subscription has come to its end.
+         *
+         * @return whether a terminal signal has been issued
+         */
+        private boolean terminateIfDone() {
+            Throwable error = (requestError != null) ? requestError : closingError;
+            if (error != null) {
+                cancel();
+                subscriber.onError(error);
+                return true;
+            }
+
+            if (closed && buffer.isEmpty()) {
+                cancel();
+                subscriber.onComplete();
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.railsreactor.util.concurrent;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link QueueMetrics} kept in striped counters and exposed as a standard MBean.
+ * One in {@code samplingInterval} blocking waits is timed and recorded in a log-linear histogram
+ * with a relative error below 1/8.
+ * <pre>
+ * JmxQueueMetrics metrics = new JmxQueueMetrics(16);
+ * metrics.register("orders");
+ * BlockingQueue&lt;Order&gt; queue = new MostRecentlyInsertedBlockingQueue&lt;&gt;(1024, null, metrics);
+ * </pre>
+ */
+public class JmxQueueMetrics implements QueueMetrics, JmxQueueMetricsMBean {
+    private static final String DOMAIN = "com.railsreactor.util";
+    private static final int TAKE_WAIT_PRECISION_BITS = 3;
+
+    private final int samplingInterval;
+    private final LongAdder offerCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder pollHitCount = new LongAdder();
+    private final LongAdder pollMissCount = new LongAdder();
+    private final LongAdder casRetryCount = new LongAdder();
+    private final LogLinearHistogram takeWaits = new LogLinearHistogram(TAKE_WAIT_PRECISION_BITS);
+    private final LongAdder sampledTakeWaitCount = new LongAdder();
+
+    private volatile ObjectName objectName;
+
+    /**
+     * @param samplingInterval time one in this many blocking waits, 1 to time all of them
+     */
+    public JmxQueueMetrics(int samplingInterval) {
+        if (samplingInterval <= 0) throw new IllegalArgumentException("Sampling interval must be positive.");
+
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * {@code com.railsreactor.util:type=QueueMetrics,name=<queueName>}.
+     *
+     * @throws IllegalStateException if the registration fails, e.g. because the name is taken
+     */
+    public ObjectName register(String queueName) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=QueueMetrics,name=" + ObjectName.quote(queueName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+
+            return name;
+
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the queue metrics " + queueName + ".", e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server. Does nothing if they are not registered.
+     */
+    public void unregister() {
+        ObjectName name = objectName;
+        if (name == null)
+            return;
+
+        objectName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister the queue metrics " + name + ".", e);
+        }
+    }
+
+    @Override
+    public void recordOffers(int count) {
+        offerCount.add(count);
+    }
+
+    @Override
+    public void recordEvictions(int count) {
+        evictionCount.add(count);
+    }
+
+    @Override
+    public void recordPolls(int hits, int misses) {
+        if (hits > 0)
+            pollHitCount.add(hits);
+        if (misses > 0)
+            pollMissCount.add(misses);
+    }
+
+    @Override
+    public void recordCasRetries(int count) {
+        casRetryCount.add(count);
+    }
+
+    @Override
+    public boolean sampleTiming() {
+        return samplingInterval == 1 || ThreadLocalRandom.current().nextInt(samplingInterval) == 0;
+    }
+
+    @Override
+    public void recordTakeWait(long nanos) {
+        sampledTakeWaitCount.increment();
+        takeWaits.add(Math.max(0, nanos), 1);
+    }
+
+    @Override
+    public long getOfferCount() {
+        return offerCount.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public long getPollHitCount() {
+        return pollHitCount.sum();
+    }
+
+    @Override
+    public long getPollMissCount() {
+        return pollMissCount.sum();
+    }
+
+    @Override
+    public double getPollHitRatio() {
+        long hits = pollHitCount.sum();
+        long total = hits + pollMissCount.sum();
+
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getCasRetryCount() {
+        return casRetryCount.sum();
+    }
+
+    @Override
+    public long getSampledTakeWaitCount() {
+        return sampledTakeWaitCount.sum();
+    }
+
+    @Override
+    public long getTakeWaitMedianNanos() {
+        return takeWaitQuantile(0.5);
+    }
+
+    @Override
+    public long getTakeWait99thPercentileNanos() {
+        return takeWaitQuantile(0.99);
+    }
+
+    private long takeWaitQuantile(double quantile) {
+        long[] magnitudeCounts = takeWaits.magnitudeCounts();
+        long total = LogLinearHistogram.total(magnitudeCounts);
+
+        return (total <= 0) ? 0 : takeWaits.quantile(quantile, magnitudeCounts, total);
+    }
+
+    @Override
+    public long[] getTakeWaitHistogram() {
+        return takeWaits.magnitudeCounts();
+    }
+
+    @Override
+    public void reset() {
+        offerCount.reset();
+        evictionCount.reset();
+        pollHitCount.reset();
+        pollMissCount.reset();
+        casRetryCount.reset();
+        sampledTakeWaitCount.reset();
+        takeWaits.reset();
+    }
+}
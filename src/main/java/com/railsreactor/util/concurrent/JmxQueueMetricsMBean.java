@@ -0,0 +1,34 @@
+package com.railsreactor.util.concurrent;
+
+/**
+ * The management interface of {@link JmxQueueMetrics}. Wait times are in nanoseconds
+ * and are upper bounds exceeding the exact value by less than 1/8 of it.
+ */
+public interface JmxQueueMetricsMBean {
+
+    long getOfferCount();
+
+    long getEvictionCount();
+
+    long getPollHitCount();
+
+    long getPollMissCount();
+
+    double getPollHitRatio();
+
+    long getCasRetryCount();
+
+    long getSampledTakeWaitCount();
+
+    long getTakeWaitMedianNanos();
+
+    long getTakeWait99thPercentileNanos();
+
+    /**
+     * @return the number of sampled waits per power-of-two range: the first element counts the waits
+     * below 8 ns and the element {@code i > 0} those from {@code 2^(i+2)} to {@code 2^(i+3) - 1} ns
+     */
+    long[] getTakeWaitHistogram();
+
+    void reset();
+}
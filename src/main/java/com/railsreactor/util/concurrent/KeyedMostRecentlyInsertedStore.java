@@ -0,0 +1,273 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code capacityPerKey} most recently offered elements of every key, for a large number of keys.
+ * <p>
+ * A key costs a map entry and a small ring: an array that starts at two slots and doubles as the key
+ * receives elements, up to {@code capacityPerKey}, so keys that have seen a few elements stay small.
+ * The keys are spread across stripes by their hash; every stripe is a map guarded by its own lock,
+ * so operations on keys of different stripes do not contend.
+ * <p>
+ * The store can be bounded by the total number of elements. Every stripe then gets an equal share
+ * of the bound and, when an offer exceeds it, discards whole keys of that stripe in least recently
+ * used order (both {@code offer} and {@code recent} count as a use). The key being offered to is
+ * never discarded, so a stripe holds at least one key.
+ */
+public class KeyedMostRecentlyInsertedStore<K, E> {
+    private static final int INITIAL_RING_LENGTH = 2;
+
+    private final int capacityPerKey;
+    private final Stripe<K, E>[] stripes;
+    private final LongAdder evictedKeyCount = new LongAdder();
+
+    /**
+     * Creates an unbounded store with four stripes per available processor.
+     */
+    public KeyedMostRecentlyInsertedStore(int capacityPerKey) {
+        this(capacityPerKey, Long.MAX_VALUE, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxElements the bound of the total number of elements, {@code Long.MAX_VALUE} for none.
+     *                    A stripe keeps at least one key's elements, whatever its share of the bound.
+     */
+    @SuppressWarnings("unchecked")
+    public KeyedMostRecentlyInsertedStore(int capacityPerKey, long maxElements, int stripeCount) {
+        if (capacityPerKey <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (maxElements <= 0) throw new IllegalArgumentException("Max elements must be positive.");
+        if (stripeCount <= 0) throw new IllegalArgumentException("Stripe count must be positive.");
+
+        this.capacityPerKey = capacityPerKey;
+        this.stripes = new Stripe[stripeCount];
+
+        long maxElementsPerStripe = Math.max(1, maxElements / stripeCount);
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new Stripe<>(maxElementsPerStripe);
+    }
+
+    public int capacityPerKey() {
+        return capacityPerKey;
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Appends {@code element} to the recent elements of {@code key}, discarding the oldest one
+     * if the key already has {@code capacityPerKey} elements.
+     */
+    public void offer(K key, E element) {
+        if (key == null)
+            throw new NullPointerException();
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        Stripe<K, E> stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            Ring<E> ring = stripe.rings.get(key);
+            if (ring == null) {
+                ring = new Ring<>(Math.min(INITIAL_RING_LENGTH, capacityPerKey));
+                stripe.rings.put(key, ring);
+            }
+
+            if (ring.offer(element, capacityPerKey))
+                stripe.elementCount++;
+
+            evictColdKeys(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void evictColdKeys(Stripe<K, E> stripe) {
+        Iterator<Ring<E>> leastRecentlyUsed = stripe.rings.values().iterator();
+
+        // the most recently used key is the last one and is never discarded
+        while (stripe.elementCount > stripe.maxElements && stripe.rings.size() > 1) {
+            stripe.elementCount -= leastRecentlyUsed.next().size;
+            leastRecentlyUsed.remove();
+            evictedKeyCount.increment();
+        }
+    }
+
+    /**
+     * @return a copy of the recent elements of {@code key} from the oldest to the newest,
+     * or an empty list if the key has none
+     */
+    public List<E> recent(K key) {
+        if (key == null)
+            throw new NullPointerException();
+
+        Stripe<K, E> stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            Ring<E> ring = stripe.rings.get(key);
+
+            return (ring == null) ? Collections.emptyList() : ring.toList();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether {@code key} had any elements
+     */
+    public boolean remove(K key) {
+        if (key == null)
+            throw new NullPointerException();
+
+        Stripe<K, E> stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            Ring<E> ring = stripe.rings.remove(key);
+            if (ring == null)
+                return false;
+
+            stripe.elementCount -= ring.size;
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (Stripe<K, E> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.rings.clear();
+                stripe.elementCount = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys with elements, not an atomic snapshot if the store is being modified
+     */
+    public long keyCount() {
+        long result = 0;
+        for (Stripe<K, E> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                result += stripe.rings.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of elements of all keys, not an atomic snapshot if the store is being modified
+     */
+    public long elementCount() {
+        long result = 0;
+        for (Stripe<K, E> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                result += stripe.elementCount;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of keys discarded to keep the store within its bound
+     */
+    public long evictedKeyCount() {
+        return evictedKeyCount.sum();
+    }
+
+    private Stripe<K, E> stripeOf(K key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+
+        return stripes[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private static final class Stripe<K, E> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long maxElements;
+
+        /**
+         * The rings in access order, the least recently used first.
+         */
+        private final LinkedHashMap<K, Ring<E>> rings = new LinkedHashMap<>(16, 0.75f, true);
+        private long elementCount;
+
+        private Stripe(long maxElements) {
+            this.maxElements = maxElements;
+        }
+    }
+
+    /**
+     * A circular array of the recent elements of one key that grows by doubling up to the capacity.
+     */
+    private static final class Ring<E> {
+        private Object[] elements;
+        private int head;
+        private int size;
+
+        private Ring(int initialLength) {
+            this.elements = new Object[initialLength];
+        }
+
+        /**
+         * @return whether the size grew, i.e. no element was overwritten
+         */
+        private boolean offer(E element, int capacity) {
+            if (size == elements.length && size < capacity)
+                grow(capacity);
+
+            if (size == elements.length) {
+                elements[head] = element;
+                head = (head == elements.length - 1) ? 0 : head + 1;
+                return false;
+            }
+
+            elements[physicalIndex(size)] = element;
+            size++;
+            return true;
+        }
+
+        private void grow(int capacity) {
+            Object[] grown = new Object[(int) Math.min(capacity, 2L * elements.length)];
+            System.arraycopy(elements, head, grown, 0, size - head);
+            System.arraycopy(elements, 0, grown, size - head, head);
+
+            elements = grown;
+            head = 0;
+        }
+
+        private int physicalIndex(int logicalIndex) {
+            int index = head + logicalIndex;
+
+            return (index < elements.length) ? index : index - elements.length;
+        }
+
+        private List<E> toList() {
+            List<E> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked")
+                E element = (E) elements[physicalIndex(i)];
+                result.add(element);
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with HDR-style log-linear buckets: every power-of-two range
+ * (a <i>magnitude</i>) is split into {@code 2^precisionBits} equal buckets, so a value is known
+ * to a relative error of {@code 2^-precisionBits}. Values below {@code 2^precisionBits} are exact.
+ * <p>
+ * Counts can be decremented, so the histogram can track a sliding window. Besides the bucket
+ * counts every magnitude has a total, and a quantile is found by scanning the magnitude totals
+ * and then the buckets of one magnitude only. Updates are two atomic additions; a quantile read
+ * while values are being added or removed may be off by the values in flight.
+ */
+final class LogLinearHistogram {
+    private final int precisionBits;
+    private final int subBucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray magnitudeCounts;
+
+    LogLinearHistogram(int precisionBits) {
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+
+        int magnitudeCount = 64 - precisionBits;
+        this.counts = new AtomicLongArray(magnitudeCount << precisionBits);
+        this.magnitudeCounts = new AtomicLongArray(magnitudeCount);
+    }
+
+    void add(long value, long delta) {
+        int bucket = bucketOf(value);
+        counts.getAndAdd(bucket, delta);
+        magnitudeCounts.getAndAdd(bucket >>> precisionBits, delta);
+    }
+
+    private int bucketOf(long value) {
+        if (value < subBucketCount)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+
+        return ((shift + 1) << precisionBits) + (int) ((value >>> shift) - subBucketCount);
+    }
+
+    /**
+     * @return the largest value that falls into {@code bucket}
+     */
+    private long highestValueOf(int bucket) {
+        int magnitude = bucket >>> precisionBits;
+        int subBucket = bucket & (subBucketCount - 1);
+        if (magnitude == 0)
+            return subBucket;
+
+        // overflows to Long.MAX_VALUE for the last bucket
+        return ((subBucketCount + subBucket + 1L) << (magnitude - 1)) - 1;
+    }
+
+    /**
+     * Sets all counts to zero. Values added concurrently may be partly lost.
+     */
+    void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        for (int i = 0; i < magnitudeCounts.length(); i++)
+            magnitudeCounts.set(i, 0);
+    }
+
+    /**
+     * @return the current totals of the magnitudes, to be passed to {@link #quantile}
+     */
+    long[] magnitudeCounts() {
+        long[] result = new long[magnitudeCounts.length()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = magnitudeCounts.get(i);
+
+        return result;
+    }
+
+    static long total(long[] magnitudeCounts) {
+        long result = 0;
+        for (long count : magnitudeCounts)
+            result += count;
+
+        return result;
+    }
+
+    /**
+     * @param total the total of {@code magnitudeCounts}, must be positive
+     * @return the largest value of the bucket holding the {@code quantile}
+     */
+    long quantile(double quantile, long[] magnitudeCounts, long total) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int magnitude = 0; magnitude < magnitudeCounts.length; magnitude++) {
+            if (seen + magnitudeCounts[magnitude] < rank) {
+                seen += magnitudeCounts[magnitude];
+                continue;
+            }
+
+            int firstBucket = magnitude << precisionBits;
+            for (int bucket = firstBucket; bucket < firstBucket + subBucketCount; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank)
+                    return highestValueOf(bucket);
+            }
+
+            // the bucket counts changed after the magnitude totals were read
+            return highestValueOf(firstBucket + subBucketCount - 1);
+        }
+
+        return highestValueOf(counts.length() - 1);
+    }
+}
@@ -1,21 +1,43 @@
 package com.railsreactor.util.concurrent;
 
+import com.railsreactor.util.EvictionListener;
+
 import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A blocking variant of {@link ConcurrentMostRecentlyInsertedQueue}. Producers never block: the queue
+ * evicts its oldest element instead, so {@code put} and the timed {@code offer} return at once.
+ * <p>
+ * Producers stay lock-free. A lock is taken only by consumers that found the queue empty and by
+ * a producer that has to wake one of them, see {@link WaitingConsumers}.
+ */
 public class MostRecentlyInsertedBlockingQueue<E> extends ConcurrentMostRecentlyInsertedQueue<E>
         implements BlockingQueue<E> {
 
-    private final ReentrantLock lock;
-    private final Condition notEmpty;
+    private final WaitingConsumers waitingConsumers;
 
     public MostRecentlyInsertedBlockingQueue(int capacity) {
-        super(capacity);
-        lock = new ReentrantLock();
-        notEmpty = lock.newCondition();
+        this(capacity, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener) {
+        this(capacity, evictionListener, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full, may be {@code null}
+     * @param metrics          receives the operation counts and the sampled times consumers spent blocked,
+     *                         {@code null} to disable metrics
+     */
+    public MostRecentlyInsertedBlockingQueue(int capacity, EvictionListener<? super E> evictionListener,
+                                             QueueMetrics metrics) {
+        super(capacity, evictionListener, metrics);
+        this.waitingConsumers = new WaitingConsumers(metrics);
     }
 
     @Override
@@ -30,60 +52,34 @@ public class MostRecentlyInsertedBlockingQueue<E> extends ConcurrentMostRecently
 
     @Override
     public boolean offer(E e) {
-        final ReentrantLock lock = this.lock;
-        lock.lock();
-
         boolean isElemWasAdded = super.offer(e);
-        try {
-            if (isElemWasAdded)
-                notEmpty.signalAll();
-        } finally {
-            lock.unlock();
-        }
+
+        if (isElemWasAdded)
+            waitingConsumers.signalIfAny();
 
         return isElemWasAdded;
     }
 
+    /**
+     * Offers the batch as {@link ConcurrentMostRecentlyInsertedQueue#offerAll(Object[], int, int)} does
+     * and signals a waiting consumer once, which passes the signal on while elements are left.
+     */
     @Override
-    public E take() throws InterruptedException {
-        final ReentrantLock lock = this.lock;
-
-        lock.lockInterruptibly();
-        try {
-            while (size() == 0)
-                notEmpty.await();
-            return poll();
+    public void offerAll(E[] batch, int offset, int length) {
+        super.offerAll(batch, offset, length);
 
-        } finally {
-            lock.unlock();
-        }
+        if (length > 0)
+            waitingConsumers.signalIfAny();
     }
 
     @Override
-    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
-        long nanos = unit.toNanos(timeout);
-        final ReentrantLock lock = this.lock;
-
-        lock.lockInterruptibly();
-        try {
-            if (noElementAddedDuringTimeout(nanos)) {
-                return null;
-            } else {
-                return poll();
-            }
-        } finally {
-            lock.unlock();
-        }
+    public E take() throws InterruptedException {
+        return waitingConsumers.take(this, this::pollUnrecorded);
     }
 
-    private boolean noElementAddedDuringTimeout(long nanos) throws InterruptedException {
-        while (size() == 0) {
-            if (nanos <= 0)
-                return true;
-            nanos = notEmpty.awaitNanos(nanos);
-        }
-
-        return false;
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingConsumers.poll(this, this::pollUnrecorded, unit.toNanos(timeout));
     }
 
     @Override
@@ -93,11 +89,38 @@ public class MostRecentlyInsertedBlockingQueue<E> extends ConcurrentMostRecently
 
     @Override
     public int drainTo(Collection<? super E> c) {
-        throw new UnsupportedOperationException();
+        return drainTo(c, Integer.MAX_VALUE);
     }
 
     @Override
     public int drainTo(Collection<? super E> c, int maxElements) {
-        throw new UnsupportedOperationException();
+        if (c == null)
+            throw new NullPointerException();
+
+        return drainBatch(c, maxElements);
+    }
+
+    /**
+     * Waits up to the given time for an element to become available and then moves
+     * up to {@code maxElements} elements to {@code c} as {@link #drainTo(Collection, int)} does.
+     *
+     * @return the number of elements transferred, or zero if the waiting time elapsed
+     */
+    public int drainTo(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException("The queue cannot be drained to itself.");
+        if (maxElements <= 0)
+            return 0;
+
+        E first = poll(timeout, unit);
+        if (first == null)
+            return 0;
+
+        c.add(first);
+
+        return 1 + drainRemaining(c, maxElements - 1);
     }
 }
@@ -0,0 +1,105 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Quantiles of the {@code capacity} most recently recorded non-negative values, e.g. request latencies.
+ * <p>
+ * The values are kept in a {@link ConcurrentMostRecentlyInsertedQueue} and counted in a log-linear
+ * histogram. A recorded value is added to the histogram, and the value it evicts from the queue is
+ * subtracted by the queue's eviction listener, so the histogram always describes the window and
+ * a quantile costs a scan of a fixed number of counters, independent of the capacity, instead of
+ * sorting a copy of the window. A quantile is reported as the largest value of its histogram bucket,
+ * which exceeds the exact quantile by less than {@code 2^-precisionBits} of it.
+ * <p>
+ * This class is thread-safe and lock-free. While values are being recorded, a quantile may take
+ * the values in flight into account or not.
+ */
+public class MostRecentlyInsertedQuantileSketch {
+    private static final int DEFAULT_PRECISION_BITS = 7;
+
+    private final LogLinearHistogram histogram;
+    private final ConcurrentMostRecentlyInsertedQueue<Long> window;
+
+    /**
+     * Creates a sketch with a relative error below 1%.
+     */
+    public MostRecentlyInsertedQuantileSketch(int capacity) {
+        this(capacity, DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits the number of bits of a value kept by the histogram, from 1 to 16. The relative
+     *                      error is below {@code 2^-precisionBits}, and the histogram has
+     *                      {@code (64 - precisionBits) * 2^precisionBits} counters.
+     */
+    public MostRecentlyInsertedQuantileSketch(int capacity, int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16)
+            throw new IllegalArgumentException("Precision must be between 1 and 16 bits.");
+
+        this.histogram = new LogLinearHistogram(precisionBits);
+        this.window = new ConcurrentMostRecentlyInsertedQueue<>(capacity,
+                evicted -> histogram.add(evicted, -1));
+    }
+
+    public int capacity() {
+        return window.capacity();
+    }
+
+    /**
+     * @return the number of values in the window
+     */
+    public int size() {
+        return window.size();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void record(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Values must not be negative.");
+
+        // counted before it is offered, so the eviction of this value never precedes its addition
+        histogram.add(value, 1);
+        window.offer(value);
+    }
+
+    /**
+     * @param quantile from 0 to 1, e.g. 0.99 for p99
+     * @return the smallest value, within the relative error, that is not exceeded by
+     * {@code quantile} of the values in the window
+     * @throws NoSuchElementException if the window is empty
+     */
+    public long quantile(double quantile) {
+        return quantiles(quantile)[0];
+    }
+
+    /**
+     * Reads several quantiles from the same state of the histogram, see {@link #quantile(double)}.
+     */
+    public long[] quantiles(double... quantiles) {
+        for (double quantile : quantiles)
+            if (!(quantile >= 0 && quantile <= 1))
+                throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+
+        long[] magnitudeCounts = histogram.magnitudeCounts();
+        long total = LogLinearHistogram.total(magnitudeCounts);
+        if (total <= 0)
+            throw new NoSuchElementException("The window is empty.");
+
+        long[] result = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++)
+            result[i] = histogram.quantile(quantiles[i], magnitudeCounts, total);
+
+        return result;
+    }
+
+    /**
+     * Removes all values from the window.
+     */
+    public void clear() {
+        for (Long value = window.poll(); value != null; value = window.poll())
+            histogram.add(value, -1);
+    }
+}
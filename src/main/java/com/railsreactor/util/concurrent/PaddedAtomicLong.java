@@ -0,0 +1,21 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An AtomicLong padded to a cache line, so two counters written by different threads
+ * do not invalidate each other's cache line.
+ */
+@SuppressWarnings("unused")
+class PaddedAtomicLong extends AtomicLong {
+    private static final long serialVersionUID = 777;
+
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    PaddedAtomicLong() {
+    }
+
+    PaddedAtomicLong(long initialValue) {
+        super(initialValue);
+    }
+}
@@ -0,0 +1,152 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The slot sequencing shared by the lock-free primitive queues. Positions grow monotonically and map onto
+ * a ring of {@code capacity} slots; each slot carries a sequence number that tells which position it belongs
+ * to and in which state: {@code 2 * position} means free for that position and {@code 2 * position + 1} means
+ * published for it.
+ * <p>
+ * A producer claims the tail position by CAS once its slot is free, writes the value and publishes it. If the
+ * slot still holds the published element from {@code capacity} positions ago, the producer first claims that
+ * element at the head and releases it, which frees the slot for the next lap. A consumer claims the head position
+ * by CAS once its slot is published, reads the value and releases the slot for the position one lap later.
+ * Subclasses keep the values in their own primitive arrays and only read or write a slot between claiming
+ * its position and publishing or releasing it.
+ * <p>
+ * Primitive slots hold no references, so evicting the oldest element only has to release its slot.
+ */
+abstract class PrimitiveSequencedRing {
+    private final int capacity;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    PrimitiveSequencedRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.capacity = capacity;
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, freeSequence(i));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        long headPosition = head.get();
+        long size = tail.get() - headPosition;
+
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        long position;
+        while ((position = claimHead()) >= 0)
+            release(position);
+    }
+
+    /**
+     * Claims the slot for the next offered element evicting the oldest one if the ring is full.
+     *
+     * @return the claimed position that has to be {@link #publish(long) published} afterwards
+     */
+    final long claimTail() {
+        for (;;) {
+            long position = tail.get();
+            long sequence = sequences.get(indexOf(position));
+
+            if (sequence == freeSequence(position)) {
+                if (tail.compareAndSet(position, position + 1))
+                    return position;
+
+            } else if (sequence < freeSequence(position)) {
+                long oldest = position - capacity;
+                if (sequence == publishedSequence(oldest) && head.compareAndSet(oldest, oldest + 1))
+                    release(oldest);
+            }
+        }
+    }
+
+    final void publish(long position) {
+        sequences.set(indexOf(position), publishedSequence(position));
+    }
+
+    /**
+     * Claims the head slot for reading.
+     *
+     * @return the claimed position that has to be {@link #release(long) released} afterwards,
+     * or {@code -1} if there is no published element at the head
+     */
+    final long claimHead() {
+        for (;;) {
+            long position = head.get();
+            long sequence = sequences.get(indexOf(position));
+
+            if (sequence == publishedSequence(position)) {
+                if (head.compareAndSet(position, position + 1))
+                    return position;
+
+            } else if (sequence < publishedSequence(position)) {
+                return -1;
+            }
+        }
+    }
+
+    final void release(long position) {
+        sequences.set(indexOf(position), freeSequence(position + capacity));
+    }
+
+    /**
+     * @return the position of the published head element without claiming it,
+     * or {@code -1} if there is no such element
+     */
+    final long publishedHead() {
+        for (;;) {
+            long position = head.get();
+            long sequence = sequences.get(indexOf(position));
+
+            if (sequence == publishedSequence(position))
+                return position;
+            else if (sequence < publishedSequence(position))
+                return -1;
+        }
+    }
+
+    final boolean isHead(long position) {
+        return head.get() == position;
+    }
+
+    final boolean isPublished(long position) {
+        return sequences.get(indexOf(position)) == publishedSequence(position);
+    }
+
+    final long headPosition() {
+        return head.get();
+    }
+
+    final long tailPosition() {
+        return tail.get();
+    }
+
+    private static long freeSequence(long position) {
+        return 2 * position;
+    }
+
+    private static long publishedSequence(long position) {
+        return 2 * position + 1;
+    }
+
+    final int indexOf(long position) {
+        return (int) (position % capacity);
+    }
+}
@@ -0,0 +1,55 @@
+package com.railsreactor.util.concurrent;
+
+/**
+ * Receives counts and timings of queue operations. A queue created without metrics does not call
+ * any hook, so disabled metrics cost a null check per operation.
+ * <p>
+ * Hooks are called concurrently by the threads operating on the queue and must be cheap and
+ * thread-safe, e.g. update {@link java.util.concurrent.atomic.LongAdder striped counters}.
+ * All methods do nothing by default. See {@link JmxQueueMetrics} for an implementation
+ * that exposes the metrics via JMX.
+ */
+public interface QueueMetrics {
+
+    /**
+     * Called once per offer or per batch offer with the number of elements offered.
+     */
+    default void recordOffers(int count) {
+    }
+
+    /**
+     * Called with the number of elements discarded because the queue was full.
+     */
+    default void recordEvictions(int count) {
+    }
+
+    /**
+     * Called once per poll or drain with the number of elements taken out ({@code hits}) and
+     * whether the queue had none ({@code misses} is one then, zero otherwise).
+     */
+    default void recordPolls(int hits, int misses) {
+    }
+
+    /**
+     * Called with the number of failed compare-and-set attempts an operation of a lock-free queue
+     * had to repeat because of other threads, the lock-free counterpart of lock wait time.
+     * It is not called for operations without retries.
+     */
+    default void recordCasRetries(int count) {
+    }
+
+    /**
+     * Decides whether the next blocking wait is timed. Timing requires two clock readings,
+     * so an implementation usually samples only a fraction of the waits.
+     */
+    default boolean sampleTiming() {
+        return false;
+    }
+
+    /**
+     * Called with the time a consumer spent blocked waiting for an element,
+     * for the waits {@link #sampleTiming() chosen for sampling} only.
+     */
+    default void recordTakeWait(long nanos) {
+    }
+}
@@ -0,0 +1,236 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A variant of {@link ConcurrentMostRecentlyInsertedQueue} for exactly one producer thread
+ * and one consumer thread. {@code offer} may only be called by the producer; {@code poll},
+ * {@code peek} and {@code clear} only by the consumer. {@code size}, {@code contains},
+ * iteration and streams are safe from any thread and never throw ConcurrentModificationException.
+ * <p>
+ * Each counter is written by one thread only, with ordered stores ({@code lazySet}), and lives
+ * on its own cache line. The producer never reads {@code head}: it always writes to the slot
+ * of {@code tail}, overwriting the oldest element of a full ring. To tell whether the element
+ * it read was overwritten meanwhile, the consumer checks the slot's sequence before and after
+ * reading it, like a seqlock; the producer marks the slot as being written before storing the
+ * element and publishes the element's position afterwards. A consumer lapped by the producer
+ * skips to the oldest element still in the ring.
+ * <p>
+ * Consumed slots keep their references until the producer overwrites them.
+ * Removal of arbitrary elements is not supported.
+ */
+public class SingleProducerSingleConsumerMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+    private static final long WRITING = -1;
+
+    private final int capacity;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+
+    /**
+     * The position of the next element to be polled. Written by the consumer only.
+     */
+    private final PaddedAtomicLong head = new PaddedAtomicLong();
+
+    /**
+     * The position the next offered element will be written to. Written by the producer only.
+     */
+    private final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+    /**
+     * The number of elements taken out by the consumer. Written by the consumer only.
+     */
+    private final PaddedAtomicLong consumedCount = new PaddedAtomicLong();
+
+    public SingleProducerSingleConsumerMostRecentlyInsertedQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, WRITING);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of elements overwritten by the producer before the consumer took them out
+     */
+    public long evictionCount() {
+        long consumed = consumedCount.get();
+        long headPosition = head.get();
+        long tailPosition = tail.get();
+
+        return (headPosition - consumed) + Math.max(0, tailPosition - headPosition - capacity);
+    }
+
+    @Override
+    public int size() {
+        long headPosition = head.get();
+
+        return (int) Math.min(tail.get() - headPosition, capacity);
+    }
+
+    /**
+     * Must be called by the producer thread only.
+     */
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        long position = tail.get();
+        int index = indexOf(position);
+
+        sequences.lazySet(index, WRITING);
+        elements.lazySet(index, element);
+        sequences.lazySet(index, position);
+        tail.lazySet(position + 1);
+
+        return true;
+    }
+
+    /**
+     * Must be called by the consumer thread only.
+     */
+    @Override
+    public E poll() {
+        long position = head.get();
+
+        for (;;) {
+            long end = tail.get();
+            if (position == end) {
+                head.lazySet(position);
+                return null;
+            }
+
+            position = Math.max(position, end - capacity);
+            int index = indexOf(position);
+
+            if (sequences.get(index) == position) {
+                E element = elements.get(index);
+
+                if (sequences.get(index) == position) {
+                    head.lazySet(position + 1);
+                    consumedCount.lazySet(consumedCount.get() + 1);
+                    return element;
+                }
+            }
+
+            // the producer has lapped the consumer and is overwriting this slot
+            position++;
+        }
+    }
+
+    /**
+     * Must be called by the consumer thread only.
+     */
+    @Override
+    public E peek() {
+        long position = head.get();
+
+        for (;;) {
+            long end = tail.get();
+            if (position == end) {
+                head.lazySet(position);
+                return null;
+            }
+
+            position = Math.max(position, end - capacity);
+            int index = indexOf(position);
+
+            if (sequences.get(index) == position) {
+                E element = elements.get(index);
+
+                if (sequences.get(index) == position) {
+                    head.lazySet(position);
+                    return element;
+                }
+            }
+
+            position++;
+        }
+    }
+
+    /**
+     * Must be called by the consumer thread only.
+     */
+    @Override
+    public void clear() {
+        long headPosition = head.get();
+        long end = tail.get();
+        long startPosition = Math.max(headPosition, end - capacity);
+
+        // the positions before startPosition have been overwritten, i.e. evicted
+        consumedCount.lazySet(consumedCount.get() + (end - startPosition));
+        head.lazySet(end);
+    }
+
+    private int indexOf(long position) {
+        return (int) (position % capacity);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new WeaklyConsistentIterator();
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.ORDERED);
+    }
+
+    private final class WeaklyConsistentIterator implements Iterator<E> {
+        private long nextPosition = head.get();
+        private E nextElement;
+
+        private WeaklyConsistentIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextElement != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextElement == null)
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            E result = nextElement;
+            nextPosition++;
+            advance();
+
+            return result;
+        }
+
+        private void advance() {
+            nextElement = null;
+
+            for (long end = tail.get(); nextPosition < end; nextPosition++) {
+                nextPosition = Math.max(nextPosition, Math.max(head.get(), end - capacity));
+                int index = indexOf(nextPosition);
+
+                if (sequences.get(index) == nextPosition) {
+                    E element = elements.get(index);
+                    if (sequences.get(index) == nextPosition) {
+                        nextElement = element;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.EvictionListener;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe non-blocking variant of {@link com.railsreactor.util.MostRecentlyInsertedQueue} for many
+ * producers. Offers are spread across stripes, each a {@link ConcurrentMostRecentlyInsertedQueue} holding
+ * a share of the capacity, chosen by a hash of the offering thread.
+ * <p>
+ * Every element is tagged with a sequence number when it is offered. {@code peek} and {@code poll} take
+ * the stripe head with the smallest sequence, and iterators merge the stripes by sequence, so elements
+ * come out in recency order as precise as the chosen {@link RecencyOrder}.
+ * <p>
+ * Each stripe evicts its own oldest element when it is full. The queue therefore holds exactly
+ * the {@code capacity} most recent elements only if the producers are spread evenly across the stripes.
+ * <p>
+ * Iterators and spliterators work on a snapshot taken at their creation and never throw
+ * ConcurrentModificationException.
+ */
+public class StripedMostRecentlyInsertedQueue<E> extends AbstractQueue<E> {
+
+    public enum RecencyOrder {
+        /**
+         * Sequence numbers come from one shared counter, so the order is exact in a quiescent state.
+         * All producers update the counter.
+         */
+        EXACT,
+
+        /**
+         * Sequence numbers are {@link System#nanoTime()} readings, so producers share nothing.
+         * Elements offered by different threads within the clock resolution may come out in any order.
+         */
+        APPROXIMATE
+    }
+
+    private final int capacity;
+    private final RecencyOrder recencyOrder;
+    private final ConcurrentMostRecentlyInsertedQueue<Entry<E>>[] stripes;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Creates a queue with one stripe per available processor and the {@link RecencyOrder#EXACT exact} order.
+     */
+    public StripedMostRecentlyInsertedQueue(int capacity) {
+        this(capacity, Math.min(capacity, Runtime.getRuntime().availableProcessors()), RecencyOrder.EXACT);
+    }
+
+    public StripedMostRecentlyInsertedQueue(int capacity, int stripeCount, RecencyOrder recencyOrder) {
+        this(capacity, stripeCount, recencyOrder, null);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because their stripe was full, may be {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public StripedMostRecentlyInsertedQueue(int capacity, int stripeCount, RecencyOrder recencyOrder,
+                                            EvictionListener<? super E> evictionListener) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+        if (stripeCount <= 0 || stripeCount > capacity)
+            throw new IllegalArgumentException("Stripe count must be between 1 and the capacity.");
+        if (recencyOrder == null)
+            throw new NullPointerException();
+
+        this.capacity = capacity;
+        this.recencyOrder = recencyOrder;
+        this.stripes = (ConcurrentMostRecentlyInsertedQueue<Entry<E>>[]) new ConcurrentMostRecentlyInsertedQueue<?>[stripeCount];
+
+        EvictionListener<Entry<E>> stripeListener = (evictionListener == null) ? null
+                : entry -> evictionListener.onEviction(entry.element);
+
+        for (int i = 0; i < stripeCount; i++) {
+            int stripeCapacity = capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0);
+            stripes[i] = new ConcurrentMostRecentlyInsertedQueue<>(stripeCapacity, stripeListener);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public long evictionCount() {
+        long result = 0;
+        for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes)
+            result += stripe.evictionCount();
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        int result = 0;
+        for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes)
+            result += stripe.size();
+
+        return result;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException("This queue does NOT support null elements.");
+
+        long elementSequence = (recencyOrder == RecencyOrder.EXACT) ? sequence.getAndIncrement() : System.nanoTime();
+
+        return stripes[stripeOfCurrentThread()].offer(new Entry<>(element, elementSequence));
+    }
+
+    private int stripeOfCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    @Override
+    public E poll() {
+        for (;;) {
+            int stripe = stripeWithOldestHead();
+            if (stripe < 0)
+                return null;
+
+            Entry<E> entry = stripes[stripe].poll();
+            if (entry != null)
+                return entry.element;
+        }
+    }
+
+    @Override
+    public E peek() {
+        Entry<E> oldest = null;
+        for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes) {
+            Entry<E> head = stripe.peek();
+            if (head != null && (oldest == null || head.sequence < oldest.sequence))
+                oldest = head;
+        }
+
+        return (oldest == null) ? null : oldest.element;
+    }
+
+    /**
+     * @return the index of the stripe whose head has the smallest sequence, or {@code -1} if all are empty
+     */
+    private int stripeWithOldestHead() {
+        int result = -1;
+        long oldestSequence = Long.MAX_VALUE;
+
+        for (int i = 0; i < stripes.length; i++) {
+            Entry<E> head = stripes[i].peek();
+            if (head != null && (result < 0 || head.sequence < oldestSequence)) {
+                result = i;
+                oldestSequence = head.sequence;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        if (obj != null) {
+            for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes)
+                for (Entry<E> entry : stripe)
+                    if (obj.equals(entry.element))
+                        return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        if (obj != null) {
+            for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes)
+                for (Entry<E> entry : stripe)
+                    if (obj.equals(entry.element) && stripe.remove(entry))
+                        return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (ConcurrentMostRecentlyInsertedQueue<Entry<E>> stripe : stripes)
+            stripe.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new SnapshotIterator();
+    }
+
+    /**
+     * @return a spliterator over a snapshot of this queue, which is sized and splits evenly
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(toArray(), Spliterator.NONNULL | Spliterator.ORDERED);
+    }
+
+    private final class SnapshotIterator implements Iterator<E> {
+        private final List<StripedEntry<E>> snapshot = new ArrayList<>();
+        private int nextIndex;
+        private StripedEntry<E> lastReturned;
+
+        private SnapshotIterator() {
+            for (int i = 0; i < stripes.length; i++)
+                for (Entry<E> entry : stripes[i])
+                    snapshot.add(new StripedEntry<>(entry, i));
+
+            // the stripes are sorted runs already, which the merge sort of List.sort takes advantage of
+            snapshot.sort(Comparator.comparingLong(stripedEntry -> stripedEntry.entry.sequence));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < snapshot.size();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException("The queue has reached its end. " +
+                        "Next time try to call hasNext() first.");
+
+            lastReturned = snapshot.get(nextIndex++);
+            return lastReturned.entry.element;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException("next() hasn't yet been called, or " +
+                        "remove() has been called twice");
+
+            stripes[lastReturned.stripe].remove(lastReturned.entry);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * An element tagged with its sequence. Entries compare by identity,
+     * so a stripe removes exactly the entry it is given.
+     */
+    private static final class Entry<E> {
+        private final E element;
+        private final long sequence;
+
+        private Entry(E element, long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class StripedEntry<E> {
+        private final Entry<E> entry;
+        private final int stripe;
+
+        private StripedEntry(Entry<E> entry, int stripe) {
+            this.entry = entry;
+            this.stripe = stripe;
+        }
+    }
+}
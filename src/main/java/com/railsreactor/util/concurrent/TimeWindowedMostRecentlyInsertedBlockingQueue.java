@@ -0,0 +1,89 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.EvictionListener;
+import com.railsreactor.util.Ticker;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking variant of {@link ConcurrentTimeWindowedMostRecentlyInsertedQueue}. Like
+ * {@link MostRecentlyInsertedBlockingQueue}, producers never block and stay lock-free.
+ * Consumers blocked in {@code take} are not woken when elements expire.
+ */
+public class TimeWindowedMostRecentlyInsertedBlockingQueue<E> extends ConcurrentTimeWindowedMostRecentlyInsertedQueue<E>
+        implements BlockingQueue<E> {
+
+    private final WaitingConsumers waitingConsumers = new WaitingConsumers();
+
+    public TimeWindowedMostRecentlyInsertedBlockingQueue(int capacity, long maxAge, TimeUnit unit) {
+        super(capacity, maxAge, unit);
+    }
+
+    /**
+     * @param evictionListener receives the elements discarded because the queue was full or because
+     *                         they expired, may be {@code null}
+     */
+    public TimeWindowedMostRecentlyInsertedBlockingQueue(int capacity, long maxAge, TimeUnit unit, Ticker ticker,
+                                                         EvictionListener<? super E> evictionListener) {
+        super(capacity, maxAge, unit, ticker, evictionListener);
+    }
+
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        boolean isElemWasAdded = super.offer(e);
+
+        if (isElemWasAdded)
+            waitingConsumers.signalIfAny();
+
+        return isElemWasAdded;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return waitingConsumers.take(this);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitingConsumers.poll(this, unit.toNanos(timeout));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException("The queue cannot be drained to itself.");
+
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            c.add(element);
+            drained++;
+        }
+
+        return drained;
+    }
+}
@@ -0,0 +1,149 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.Queue;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocks the consumers of a non-blocking queue until an element is available.
+ * <p>
+ * The lock is taken only by consumers that found the queue empty and by a producer that has to wake
+ * one of them. A consumer registers itself as waiting before it re-checks the queue, and a producer
+ * reads the number of waiting consumers after it has published its element, so either the consumer
+ * sees the element or the producer sees the consumer. Each offer signals a single waiting consumer
+ * and none if nobody waits.
+ * <p>
+ * Waiting relies on {@link ReentrantLock} and its condition only and no monitor is held while
+ * a consumer waits, so a blocked virtual thread unmounts from its carrier thread instead of pinning it.
+ * <p>
+ * A blocking operation may poll the queue several times before it gets an element. With metrics it polls
+ * through a {@code poller} that does not report polls and reports its own result as a single hit or miss.
+ */
+final class WaitingConsumers {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * The number of consumers blocked in {@code take} or a timed {@code poll}. Updated under the lock only.
+     */
+    private volatile int count;
+
+    /**
+     * Receives the sampled wait times, {@code null} if metrics are disabled.
+     */
+    private final QueueMetrics metrics;
+
+    WaitingConsumers() {
+        this(null);
+    }
+
+    WaitingConsumers(QueueMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Must be called by a producer after its element has been published.
+     */
+    void signalIfAny() {
+        if (count == 0)
+            return;
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    <E> E take(Queue<E> queue) throws InterruptedException {
+        return take(queue, queue::poll);
+    }
+
+    /**
+     * @param poller polls {@code queue} without reporting the poll to the metrics
+     */
+    <E> E take(Queue<E> queue, Supplier<E> poller) throws InterruptedException {
+        E element = poller.get();
+        if (element != null)
+            return recordPoll(element);
+
+        long waitStart = startTiming();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        count++;
+        try {
+            while ((element = poller.get()) == null)
+                notEmpty.await();
+            return recordPoll(element);
+
+        } finally {
+            leave(queue);
+            lock.unlock();
+            stopTiming(waitStart);
+        }
+    }
+
+    <E> E poll(Queue<E> queue, long nanos) throws InterruptedException {
+        return poll(queue, queue::poll, nanos);
+    }
+
+    /**
+     * @param poller polls {@code queue} without reporting the poll to the metrics
+     */
+    <E> E poll(Queue<E> queue, Supplier<E> poller, long nanos) throws InterruptedException {
+        E element = poller.get();
+        if (element != null)
+            return recordPoll(element);
+
+        long waitStart = startTiming();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        count++;
+        try {
+            while ((element = poller.get()) == null) {
+                if (nanos <= 0)
+                    return recordPoll(null);
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return recordPoll(element);
+
+        } finally {
+            leave(queue);
+            lock.unlock();
+            stopTiming(waitStart);
+        }
+    }
+
+    private <E> E recordPoll(E element) {
+        if (metrics != null)
+            metrics.recordPolls((element != null) ? 1 : 0, (element == null) ? 1 : 0);
+
+        return element;
+    }
+
+    /**
+     * @return the start of a sampled wait or {@code -1} if the wait is not timed
+     */
+    private long startTiming() {
+        return (metrics != null && metrics.sampleTiming()) ? System.nanoTime() : -1;
+    }
+
+    private void stopTiming(long waitStart) {
+        if (waitStart != -1)
+            metrics.recordTakeWait(System.nanoTime() - waitStart);
+    }
+
+    /**
+     * Unregisters the current consumer, passing the signal on if elements are left for the other
+     * waiting consumers, e.g. after a batch offer or because this one was interrupted or timed out
+     * after being signalled.
+     * Must be called under the lock.
+     */
+    private void leave(Queue<?> queue) {
+        if (--count > 0 && !queue.isEmpty())
+            notEmpty.signal();
+    }
+}
@@ -0,0 +1,76 @@
+package com.railsreactor.util.concurrent;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Adapts the publisher of this library to {@link java.util.concurrent.Flow}.
+ * <p>
+ * This class is compiled for Java 9 by the {@code java9} build profile, which is activated
+ * on JDK 9+, and must not be used on Java 8.
+ */
+public final class FlowAdapters {
+
+    private FlowAdapters() {
+    }
+
+    /**
+     * @return a {@link Flow.Publisher} subscribing its subscribers to {@code publisher}
+     */
+    public static <T> Flow.Publisher<T> toFlowPublisher(ConflatingPublisher<T> publisher) {
+        if (publisher == null)
+            throw new NullPointerException();
+
+        return subscriber -> {
+            if (subscriber == null)
+                throw new NullPointerException();
+
+            publisher.subscribe(new FlowSubscriber<>(subscriber));
+        };
+    }
+
+    private static final class FlowSubscriber<T> implements ConflatingPublisher.Subscriber<T> {
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private FlowSubscriber(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(ConflatingPublisher.Subscription subscription) {
+            subscriber.onSubscribe(new FlowSubscription(subscription));
+        }
+
+        @Override
+        public void onNext(T item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    private static final class FlowSubscription implements Flow.Subscription {
+        private final ConflatingPublisher.Subscription subscription;
+
+        private FlowSubscription(ConflatingPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void request(long n) {
+            subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            subscription.cancel();
+        }
+    }
+}
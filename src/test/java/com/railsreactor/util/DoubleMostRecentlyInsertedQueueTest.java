@@ -0,0 +1,94 @@
+package com.railsreactor.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.Assert.*;
+
+public class DoubleMostRecentlyInsertedQueueTest {
+
+    @Test
+    public void contains_Should_CompareElementsLikeDoubleEquals() {
+        DoubleMostRecentlyInsertedQueue queue = new DoubleMostRecentlyInsertedQueue(3);
+        queue.offerDouble(Double.NaN);
+        queue.offerDouble(0.0);
+
+        assertTrue(queue.contains(Double.NaN));
+        assertTrue(queue.contains(0.0));
+        assertFalse(queue.contains(-0.0));
+    }
+
+    @Test
+    public void stream_Should_ReturnElementsFromHeadToTail() {
+        DoubleMostRecentlyInsertedQueue queue = new DoubleMostRecentlyInsertedQueue(2);
+        queue.offerDouble(1.5);
+        queue.offerDouble(2.5);
+        queue.offerDouble(3.5);
+
+        assertEquals(6.0, queue.stream().sum(), 0.0);
+        assertArrayEquals(new double[]{2.5, 3.5}, queue.toArray(), 0.0);
+    }
+
+    @Test
+    public void pollDouble_Should_RemoveElementsFromHead_AfterWrappingAround() {
+        DoubleMostRecentlyInsertedQueue queue = new DoubleMostRecentlyInsertedQueue(2);
+        queue.offerDouble(1.5);
+        queue.offerDouble(2.5);
+        queue.offerDouble(3.5);
+
+        assertEquals(2.5, queue.peekDouble(), 0.0);
+        assertEquals(2.5, queue.pollDouble(), 0.0);
+        assertEquals(3.5, queue.pollDouble(), 0.0);
+        assertEquals(-1.0, queue.pollDouble(-1.0), 0.0);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void iteratorNextDouble_Should_ThrowException_AtTheEnd() {
+        DoubleMostRecentlyInsertedQueue queue = new DoubleMostRecentlyInsertedQueue(2);
+        queue.offerDouble(1.5);
+
+        PrimitiveIterator.OfDouble iterator = queue.iterator();
+        assertEquals(1.5, iterator.nextDouble(), 0.0);
+        iterator.nextDouble();
+    }
+
+    @Test
+    public void queue_Should_KeepOrderAndCapacity_WhenDeserializedAfterWrappingAround()
+            throws IOException, ClassNotFoundException {
+        DoubleMostRecentlyInsertedQueue queue = new DoubleMostRecentlyInsertedQueue(2);
+        queue.offerDouble(1.5);
+        queue.offerDouble(2.5);
+        queue.offerDouble(3.5);
+
+        DoubleMostRecentlyInsertedQueue copy = (DoubleMostRecentlyInsertedQueue) deserialize(serialize(queue));
+
+        assertEquals(2, copy.capacity());
+        assertArrayEquals(new double[]{2.5, 3.5}, copy.toArray(), 0.0);
+        assertEquals(
+                serialize(new DoubleMostRecentlyInsertedQueue(2)).length,
+                serialize(new DoubleMostRecentlyInsertedQueue(100_000)).length);
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.railsreactor.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.Assert.*;
+
+public class IntMostRecentlyInsertedQueueTest {
+    private IntMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new IntMostRecentlyInsertedQueue(3);
+        queue.offerInt(1);
+        queue.offerInt(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroCapacity_Should_ThrowException() {
+        new IntMostRecentlyInsertedQueue(0);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offerInt(3);
+        queue.offerInt(4);
+        queue.offerInt(5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new int[]{3, 4, 5}, queue.toArray());
+        assertArrayEquals(new int[]{3, 4, 5}, queue.stream().toArray());
+        assertEquals(3, queue.peekInt());
+        assertTrue(queue.contains(5));
+        assertFalse(queue.contains(2));
+    }
+
+    @Test
+    public void pollInt_Should_RemoveElementsFromHead() {
+        assertEquals(1, queue.pollInt());
+        assertEquals(2, queue.pollInt());
+        assertEquals(-1, queue.pollInt(-1));
+        assertEquals(-1, queue.peekInt(-1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pollIntFromEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.pollInt();
+    }
+
+    @Test
+    public void iterator_Should_ReturnElementsFromHeadToTail_AfterWrappingAround() {
+        queue.offerInt(3);
+        queue.offerInt(4);
+        queue.pollInt();
+        queue.offerInt(5);
+
+        PrimitiveIterator.OfInt iterator = queue.iterator();
+        assertEquals(3, iterator.nextInt());
+        assertEquals(4, iterator.nextInt());
+        assertEquals(5, iterator.nextInt());
+        assertFalse(iterator.hasNext());
+        assertEquals(3, queue.peekInt());
+        assertEquals(12, queue.stream().sum());
+    }
+
+    @Test
+    public void queue_Should_KeepOrderAndCapacity_WhenDeserializedAfterWrappingAround()
+            throws IOException, ClassNotFoundException {
+        queue.offerInt(3);
+        queue.offerInt(4);
+        queue.offerInt(5);
+
+        IntMostRecentlyInsertedQueue copy = (IntMostRecentlyInsertedQueue) deserialize(serialize(queue));
+
+        assertEquals(3, copy.capacity());
+        assertArrayEquals(new int[]{3, 4, 5}, copy.toArray());
+        copy.offerInt(6);
+        assertArrayEquals(new int[]{4, 5, 6}, copy.toArray());
+    }
+
+    @Test
+    public void serializedForm_Should_NotDependOnCapacity() throws IOException {
+        IntMostRecentlyInsertedQueue largeQueue = new IntMostRecentlyInsertedQueue(100_000);
+        largeQueue.offerInt(1);
+        largeQueue.offerInt(2);
+
+        // the capacity field is written either way, only the live elements follow it
+        assertEquals(serialize(queue).length, serialize(largeQueue).length);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void iteratorNext_Should_ThrowException_IfQueueIsModified() {
+        PrimitiveIterator.OfInt iterator = queue.iterator();
+        queue.offerInt(3);
+        iterator.nextInt();
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
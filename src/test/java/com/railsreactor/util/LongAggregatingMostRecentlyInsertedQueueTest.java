@@ -0,0 +1,88 @@
+package com.railsreactor.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongAggregatingMostRecentlyInsertedQueueTest {
+    private LongAggregatingMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new LongAggregatingMostRecentlyInsertedQueue(3);
+        queue.offerLong(4);
+        queue.offerLong(1);
+    }
+
+    @Test
+    public void aggregates_Should_CoverOnlyTheWindow_WhenElementsAreEvicted() {
+        queue.offerLong(7);
+        queue.offerLong(2);
+        queue.offerLong(3);
+
+        assertArrayEquals(new long[]{7, 2, 3}, queue.toArray());
+        assertEquals(12, queue.sum());
+        assertEquals(4.0, queue.mean(), 1e-9);
+        assertEquals(14.0 / 3, queue.variance(), 1e-9);
+        assertEquals(2, queue.min());
+        assertEquals(7, queue.max());
+    }
+
+    @Test
+    public void aggregates_Should_BeUpdated_WhenElementIsPolled() {
+        assertEquals(4, queue.pollLong());
+
+        assertEquals(1, queue.sum());
+        assertEquals(1, queue.min());
+        assertEquals(1, queue.max());
+        assertEquals(0.0, queue.variance(), 0.0);
+    }
+
+    @Test
+    public void emptyQueue_Should_HaveNoMeanAndVariance() {
+        queue.clear();
+
+        assertEquals(0, queue.sum());
+        assertTrue(Double.isNaN(queue.mean()));
+        assertTrue(Double.isNaN(queue.variance()));
+        assertEquals(0, queue.statistics().count());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void minOfEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.min();
+    }
+
+    @Test
+    public void aggregates_Should_MatchRecomputation_AfterRandomOffersAndPolls() {
+        Random random = new Random(42);
+        LongAggregatingMostRecentlyInsertedQueue randomQueue = new LongAggregatingMostRecentlyInsertedQueue(50);
+
+        for (int i = 0; i < 100_000; i++) {
+            if (random.nextInt(4) == 0)
+                randomQueue.pollLong(0);
+            else
+                randomQueue.offerLong(random.nextInt(2_000_001) - 1_000_000);
+
+            if (i % 1000 == 0 && !randomQueue.isEmpty()) {
+                long[] elements = randomQueue.toArray();
+                double mean = Arrays.stream(elements).average().getAsDouble();
+                double variance = Arrays.stream(elements).mapToDouble(e -> (e - mean) * (e - mean)).sum() / elements.length;
+                LongWindowStatistics statistics = randomQueue.statistics();
+
+                assertEquals(elements.length, statistics.count());
+                assertEquals(Arrays.stream(elements).sum(), statistics.sum());
+                assertEquals(mean, statistics.mean(), 1e-6);
+                assertEquals(variance, statistics.variance(), variance * 1e-9);
+                assertEquals(Arrays.stream(elements).min().getAsLong(), statistics.min());
+                assertEquals(Arrays.stream(elements).max().getAsLong(), statistics.max());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.railsreactor.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.Assert.*;
+
+public class LongMostRecentlyInsertedQueueTest {
+    private LongMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new LongMostRecentlyInsertedQueue(3);
+        queue.offerLong(1);
+        queue.offerLong(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroCapacity_Should_ThrowException() {
+        new LongMostRecentlyInsertedQueue(0);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offerLong(3);
+        queue.offerLong(4);
+        queue.offerLong(5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new long[]{3, 4, 5}, queue.toArray());
+        assertArrayEquals(new long[]{3, 4, 5}, queue.stream().toArray());
+        assertEquals(3, queue.peekLong());
+        assertTrue(queue.contains(5));
+        assertFalse(queue.contains(2));
+    }
+
+    @Test
+    public void pollLong_Should_RemoveElementsFromHead() {
+        assertEquals(1, queue.pollLong());
+        assertEquals(2, queue.pollLong());
+        assertEquals(-1, queue.pollLong(-1));
+        assertEquals(-1, queue.peekLong(-1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pollLongFromEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.pollLong();
+    }
+
+    @Test
+    public void iterator_Should_ReturnElementsFromHeadToTail_AfterWrappingAround() {
+        queue.offerLong(3);
+        queue.offerLong(4);
+        queue.pollLong();
+        queue.offerLong(5);
+
+        PrimitiveIterator.OfLong iterator = queue.iterator();
+        assertEquals(3, iterator.nextLong());
+        assertEquals(4, iterator.nextLong());
+        assertEquals(5, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+        assertEquals(3, queue.peekLong());
+        assertEquals(12, queue.stream().sum());
+    }
+
+    @Test
+    public void queue_Should_KeepOrderAndCapacity_WhenDeserializedAfterWrappingAround()
+            throws IOException, ClassNotFoundException {
+        queue.offerLong(3);
+        queue.offerLong(4);
+        queue.offerLong(5);
+
+        LongMostRecentlyInsertedQueue copy = (LongMostRecentlyInsertedQueue) deserialize(serialize(queue));
+
+        assertEquals(3, copy.capacity());
+        assertArrayEquals(new long[]{3, 4, 5}, copy.toArray());
+        copy.offerLong(6);
+        assertArrayEquals(new long[]{4, 5, 6}, copy.toArray());
+    }
+
+    @Test
+    public void serializedForm_Should_NotDependOnCapacity() throws IOException {
+        LongMostRecentlyInsertedQueue largeQueue = new LongMostRecentlyInsertedQueue(100_000);
+        largeQueue.offerLong(1);
+        largeQueue.offerLong(2);
+
+        // the capacity field is written either way, only the live elements follow it
+        assertEquals(serialize(queue).length, serialize(largeQueue).length);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void iteratorNext_Should_ThrowException_IfQueueIsModified() {
+        PrimitiveIterator.OfLong iterator = queue.iterator();
+        queue.offerLong(3);
+        iterator.nextLong();
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
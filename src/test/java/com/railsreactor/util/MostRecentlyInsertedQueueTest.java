@@ -1,15 +1,25 @@
 package com.railsreactor.util;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 
 import static org.junit.Assert.*;
 
 public class MostRecentlyInsertedQueueTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private Queue<Integer> intQueue;
 
     @Before
@@ -250,8 +260,9 @@ public class MostRecentlyInsertedQueueTest {
         strQueue.add("four");
         strQueue.add("five");
 
+        File file = temporaryFolder.newFile("testdata.dat");
         try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
-                new FileOutputStream("testdata.dat")))) {
+                new FileOutputStream(file)))) {
 
             out.writeObject(intQueue);
             out.writeObject(strQueue);
@@ -260,7 +271,7 @@ public class MostRecentlyInsertedQueueTest {
         Queue<Integer> intQueueFromFile = null;
         Queue<String> strQueueFromFile = null;
         try (ObjectInputStream out = new ObjectInputStream(new BufferedInputStream(
-                new FileInputStream("testdata.dat")))) {
+                new FileInputStream(file)))) {
 
             intQueueFromFile = (Queue<Integer>) out.readObject();
             strQueueFromFile = (Queue<String>) out.readObject();
@@ -307,4 +318,343 @@ public class MostRecentlyInsertedQueueTest {
         assertEquals(0, queue.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void offerAndPoll_Should_KeepOrder_WhenElementsWrapAroundTheEndOfStorage() {
+        Queue<Integer> queue = new MostRecentlyInsertedQueue<>(3);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        queue.offer(4);
+        queue.offer(5);
+
+        assertEquals(3, (int) queue.peek());
+        assertArrayEquals(new Object[]{3, 4, 5}, queue.toArray());
+        assertArrayEquals(new Integer[]{3, 4, 5}, queue.toArray(new Integer[0]));
+
+        assertEquals(3, (int) queue.poll());
+        queue.offer(6);
+
+        assertArrayEquals(new Integer[]{4, 5, 6}, queue.stream().toArray(Integer[]::new));
+        assertTrue(queue.contains(6));
+        assertFalse(queue.contains(3));
+    }
+
+    @Test
+    public void removeObject_Should_RemoveElement_WhenElementsWrapAroundTheEndOfStorage() {
+        Queue<Integer> queue = new MostRecentlyInsertedQueue<>(5);
+        for (int i = 1; i <= 8; i++)
+            queue.offer(i);
+
+        assertTrue(queue.remove(5));
+        assertArrayEquals(new Object[]{4, 6, 7, 8}, queue.toArray());
+
+        assertTrue(queue.remove(7));
+        assertArrayEquals(new Object[]{4, 6, 8}, queue.toArray());
+
+        queue.offer(9);
+        queue.offer(10);
+        queue.offer(11);
+        assertArrayEquals(new Object[]{6, 8, 9, 10, 11}, queue.toArray());
+    }
+
+    @Test
+    public void offerToFullQueue_Should_ReportEvictedElement_ToListener() {
+        List<Integer> evicted = new ArrayList<>();
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(2, evicted::add);
+        queue.offer(1);
+        queue.offer(2);
+        queue.poll();
+        queue.offer(3);
+        queue.offer(4);
+        queue.offer(5);
+
+        assertEquals(Arrays.asList(2, 3), evicted);
+        assertEquals(2, queue.evictionCount());
+    }
+
+    @Test
+    public void indexedQueue_Should_KeepContainsInSync_WithOffersEvictionsAndRemovals() {
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(3, null, true);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(2);
+        assertTrue(queue.contains(1));
+
+        queue.offer(3);
+        assertFalse(queue.contains(1));
+        assertTrue(queue.remove(2));
+        assertTrue(queue.contains(2));
+
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+        assertFalse(queue.contains(2));
+        assertFalse(queue.remove(2));
+
+        assertEquals(3, (int) queue.poll());
+        assertFalse(queue.contains(3));
+        assertFalse(queue.contains(null));
+
+        queue.offer(4);
+        queue.clear();
+        assertFalse(queue.contains(4));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void indexedQueue_Should_RebuildIndex_WhenDeserialized() throws IOException, ClassNotFoundException {
+        MostRecentlyInsertedQueue<String> queue = new MostRecentlyInsertedQueue<>(2, null, true);
+        queue.offer("one");
+        queue.offer("two");
+        queue.offer("three");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(queue);
+        }
+
+        MostRecentlyInsertedQueue<String> queueFromBytes;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            queueFromBytes = (MostRecentlyInsertedQueue<String>) in.readObject();
+        }
+
+        assertTrue(queueFromBytes.contains("three"));
+        assertFalse(queueFromBytes.contains("one"));
+        assertTrue(queueFromBytes.remove("two"));
+        assertArrayEquals(new Object[]{"three"}, queueFromBytes.toArray());
+    }
+
+    @Test
+    public void offerAll_Should_KeepOrder_WhenBatchWrapsAroundTheEndOfStorage() {
+        List<Integer> evicted = new ArrayList<>();
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(5, evicted::add);
+        queue.offerAll(new Integer[]{1, 2, 3, 4});
+        queue.poll();
+        queue.poll();
+
+        queue.offerAll(new Integer[]{0, 5, 6, 7, 0}, 1, 3);
+
+        assertArrayEquals(new Object[]{3, 4, 5, 6, 7}, queue.toArray());
+        assertEquals(0, queue.evictionCount());
+
+        queue.offerAll(Arrays.asList(8, 9, 10), 0, 2);
+
+        assertArrayEquals(new Object[]{5, 6, 7, 8, 9}, queue.toArray());
+        assertEquals(Arrays.asList(3, 4), evicted);
+    }
+
+    @Test
+    public void offerAllLargerThanCapacity_Should_KeepOnlyTheLastElements() {
+        List<Integer> evicted = new ArrayList<>();
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(3, evicted::add, true);
+        queue.offer(1);
+
+        queue.addAll(Arrays.asList(2, 3, 4, 5, 6));
+
+        assertArrayEquals(new Object[]{4, 5, 6}, queue.toArray());
+        assertEquals(Arrays.asList(1, 2, 3), evicted);
+        assertEquals(3, queue.evictionCount());
+        assertFalse(queue.contains(1));
+        assertTrue(queue.contains(6));
+    }
+
+    @Test
+    public void offerAllWithNullElement_Should_ThrowException_AndNotModifyQueue() {
+        try {
+            ((MostRecentlyInsertedQueue<Integer>) intQueue).offerAll(new Integer[]{4, null});
+            fail();
+        } catch (NullPointerException e) {
+            assertArrayEquals(new Object[]{1, 2, 3}, intQueue.toArray());
+        }
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void offerAll_Should_InvalidateIterators() {
+        Iterator<Integer> iterator = intQueue.iterator();
+        intQueue.addAll(Arrays.asList(4, 5));
+
+        iterator.next();
+    }
+
+    @Test
+    public void serializedForm_Should_NotDependOnCapacity() throws IOException {
+        MostRecentlyInsertedQueue<Integer> smallQueue = new MostRecentlyInsertedQueue<>(3);
+        MostRecentlyInsertedQueue<Integer> largeQueue = new MostRecentlyInsertedQueue<>(100_000);
+        smallQueue.addAll(intQueue);
+        largeQueue.addAll(intQueue);
+
+        assertEquals(serialize(smallQueue).length, serialize(largeQueue).length);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void queue_Should_KeepOrderAndCapacity_WhenDeserializedAfterWrappingAround()
+            throws IOException, ClassNotFoundException {
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(4);
+        queue.addAll(Arrays.asList(1, 2, 3, 4, 5, 6));
+        queue.poll();
+
+        MostRecentlyInsertedQueue<Integer> queueFromBytes;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(queue)))) {
+            queueFromBytes = (MostRecentlyInsertedQueue<Integer>) in.readObject();
+        }
+        queueFromBytes.offer(7);
+        queueFromBytes.offer(8);
+
+        assertEquals(4, queueFromBytes.capacity());
+        assertArrayEquals(new Object[]{5, 6, 7, 8}, queueFromBytes.toArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void index_Should_StayConsistent_ThroughSetCapacitySerializationAndIteratorRemove()
+            throws IOException, ClassNotFoundException {
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(6, null, true);
+        for (int element : new int[]{1, 2, 2, 3, 4, 4})
+            queue.offer(element);
+
+        Iterator<Integer> iterator = queue.iterator();
+        while (iterator.hasNext())
+            if (iterator.next() == 2)
+                iterator.remove();
+        assertIndexMatchesElements(queue);
+
+        queue.setCapacity(2);
+        assertIndexMatchesElements(queue);
+
+        queue.setCapacity(5);
+        queue.offer(1);
+        queue.offer(4);
+        assertIndexMatchesElements(queue);
+
+        MostRecentlyInsertedQueue<Integer> queueFromBytes;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(queue)))) {
+            queueFromBytes = (MostRecentlyInsertedQueue<Integer>) in.readObject();
+        }
+        assertIndexMatchesElements(queueFromBytes);
+
+        // one of the two occurrences of 4 is removed, the other one stays indexed
+        assertTrue(queueFromBytes.remove(4));
+        queueFromBytes.offer(5);
+        queueFromBytes.offer(6);
+        queueFromBytes.offer(7);
+        assertIndexMatchesElements(queueFromBytes);
+        assertArrayEquals(new Object[]{1, 4, 5, 6, 7}, queueFromBytes.toArray());
+    }
+
+    /**
+     * Compares {@code contains}, which is answered by the index, with a scan of the elements.
+     */
+    private static void assertIndexMatchesElements(MostRecentlyInsertedQueue<Integer> queue) {
+        List<Object> elements = Arrays.asList(queue.toArray());
+        for (int candidate = 0; candidate <= 8; candidate++)
+            assertEquals("contains(" + candidate + ") of " + elements,
+                    elements.contains(candidate), queue.contains(candidate));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static final ElementCodec<String> STRING_CODEC = new ElementCodec<String>() {
+        @Override
+        public void write(String element, DataOutput out) throws IOException {
+            out.writeUTF(element);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    @Test
+    public void snapshot_Should_RestoreElementsInOrder_ThroughChannel() throws IOException {
+        MostRecentlyInsertedQueue<String> queue = new MostRecentlyInsertedQueue<>(3);
+        queue.addAll(Arrays.asList("one", "two", "three", "four"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        queue.writeSnapshot(Channels.newChannel(bytes), STRING_CODEC);
+
+        MostRecentlyInsertedQueue<String> restoredQueue = new MostRecentlyInsertedQueue<>(3, null, true);
+        restoredQueue.offer("zero");
+        restoredQueue.readSnapshot(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), STRING_CODEC);
+
+        assertArrayEquals(new Object[]{"two", "three", "four"}, restoredQueue.toArray());
+        assertFalse(restoredQueue.contains("zero"));
+        assertTrue(restoredQueue.contains("four"));
+    }
+
+    @Test
+    public void snapshot_Should_KeepMostRecentElements_WhenRestoredIntoSmallerQueue() throws IOException {
+        List<String> evicted = new ArrayList<>();
+        MostRecentlyInsertedQueue<String> queue = new MostRecentlyInsertedQueue<>(5);
+        queue.addAll(Arrays.asList("one", "two", "three", "four", "five"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        queue.writeSnapshot(new DataOutputStream(bytes), STRING_CODEC);
+
+        MostRecentlyInsertedQueue<String> smallQueue = new MostRecentlyInsertedQueue<>(2, evicted::add);
+        smallQueue.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), STRING_CODEC);
+
+        assertArrayEquals(new Object[]{"four", "five"}, smallQueue.toArray());
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void truncatedSnapshot_Should_ThrowException_AndNotModifyQueue() throws IOException {
+        MostRecentlyInsertedQueue<String> queue = new MostRecentlyInsertedQueue<>(3);
+        queue.addAll(Arrays.asList("one", "two"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        queue.writeSnapshot(new DataOutputStream(bytes), STRING_CODEC);
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+
+        MostRecentlyInsertedQueue<String> restoredQueue = new MostRecentlyInsertedQueue<>(3);
+        restoredQueue.offer("zero");
+        try {
+            restoredQueue.readSnapshot(new DataInputStream(new ByteArrayInputStream(truncated)), STRING_CODEC);
+            fail();
+        } catch (EOFException e) {
+            assertArrayEquals(new Object[]{"zero"}, restoredQueue.toArray());
+        }
+    }
+
+    @Test
+    public void setCapacity_Should_ReturnTheOldestElements_WhenShrinkingAfterWrappingAround() {
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(4, null, true);
+        queue.addAll(Arrays.asList(1, 2, 3, 4, 5, 6));
+
+        assertEquals(Arrays.asList(3, 4), queue.setCapacity(2));
+        queue.offer(7);
+
+        assertEquals(2, queue.capacity());
+        assertArrayEquals(new Object[]{6, 7}, queue.toArray());
+        assertFalse(queue.contains(4));
+        assertEquals(3, queue.evictionCount());
+    }
+
+    @Test
+    public void setCapacity_Should_KeepOrder_WhenGrowing() {
+        MostRecentlyInsertedQueue<Integer> queue = new MostRecentlyInsertedQueue<>(3);
+        queue.addAll(Arrays.asList(1, 2, 3, 4));
+
+        assertTrue(queue.setCapacity(5).isEmpty());
+        queue.addAll(Arrays.asList(5, 6));
+
+        assertArrayEquals(new Object[]{2, 3, 4, 5, 6}, queue.toArray());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void setCapacity_Should_InvalidateIterators() {
+        Iterator<Integer> iterator = intQueue.iterator();
+        ((MostRecentlyInsertedQueue<Integer>) intQueue).setCapacity(10);
+
+        iterator.next();
+    }
+}
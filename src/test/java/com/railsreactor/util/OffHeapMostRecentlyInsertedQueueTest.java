@@ -0,0 +1,171 @@
+package com.railsreactor.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OffHeapMostRecentlyInsertedQueueTest {
+    private static final RecordCodec<Long> LONG_CODEC = new RecordCodec<Long>() {
+        @Override
+        public int recordSize() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long element, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, element);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    private OffHeapMostRecentlyInsertedQueue<Long> queue;
+
+    @Before
+    public void setup() {
+        queue = new OffHeapMostRecentlyInsertedQueue<>(3, LONG_CODEC);
+        queue.offer(1L);
+        queue.offer(2L);
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroCapacity_Should_ThrowException() {
+        new OffHeapMostRecentlyInsertedQueue<>(0, LONG_CODEC);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offer(3L);
+        queue.offer(4L);
+        queue.offer(5L);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new Long[]{3L, 4L, 5L}, queue.toArray(new Long[0]));
+        assertEquals(3L, (long) queue.poll());
+        assertEquals(4L, (long) queue.peek());
+    }
+
+    @Test
+    public void recordFlyweight_Should_ReadRecordsInPlace() {
+        queue.offer(3L);
+        queue.offer(4L);
+        OffHeapMostRecentlyInsertedQueue.Record record = new OffHeapMostRecentlyInsertedQueue.Record();
+
+        assertTrue(queue.peekRecord(record));
+        assertEquals(2L, record.getLong(0));
+
+        queue.getRecord(2, record);
+        assertEquals(4L, record.getLong(0));
+
+        List<Long> actual = new ArrayList<>();
+        queue.forEachRecord(r -> actual.add(r.getLong(0)));
+        assertEquals(Arrays.asList(2L, 3L, 4L), actual);
+    }
+
+    @Test
+    public void iteratorRemove_Should_RemoveElementReturnedByNext() {
+        queue.offer(3L);
+        queue.offer(4L);
+
+        Iterator<Long> iterator = queue.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+
+        assertArrayEquals(new Object[]{2L, 4L}, queue.toArray());
+    }
+
+    @Test
+    public void offerRejectedByCodec_Should_LeaveTheQueueUnchanged() {
+        OffHeapMostRecentlyInsertedQueue<Long> validating = new OffHeapMostRecentlyInsertedQueue<>(2, new RecordCodec<Long>() {
+            @Override
+            public int recordSize() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void write(Long element, ByteBuffer buffer, int offset) {
+                if (element < 0)
+                    throw new IllegalArgumentException("Negative elements are not supported.");
+                buffer.putLong(offset, element);
+            }
+
+            @Override
+            public Long read(ByteBuffer buffer, int offset) {
+                return buffer.getLong(offset);
+            }
+        });
+
+        try {
+            validating.offer(1L);
+            assertOfferFails(validating, -1L);
+            assertArrayEquals(new Object[]{1L}, validating.toArray());
+
+            validating.offer(2L);
+            assertOfferFails(validating, -2L);
+            assertEquals(2, validating.size());
+            assertArrayEquals(new Object[]{1L, 2L}, validating.toArray());
+            assertEquals(1L, (long) validating.poll());
+        } finally {
+            validating.close();
+        }
+    }
+
+    private static void assertOfferFails(OffHeapMostRecentlyInsertedQueue<Long> queue, Long element) {
+        try {
+            queue.offer(element);
+            fail("Offering an element rejected by the codec should throw IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void offerAfterClose_Should_ThrowException() {
+        queue.close();
+        queue.offer(3L);
+    }
+
+    @Test
+    public void recordReadAfterClose_Should_ThrowException_InsteadOfReadingFreedMemory() {
+        OffHeapMostRecentlyInsertedQueue.Record peeked = new OffHeapMostRecentlyInsertedQueue.Record();
+        assertTrue(queue.peekRecord(peeked));
+
+        List<OffHeapMostRecentlyInsertedQueue.Record> leaked = new ArrayList<>();
+        queue.forEachRecord(leaked::add);
+
+        queue.close();
+
+        try {
+            peeked.getLong(0);
+            fail("Reading a record of a closed queue should throw IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+
+        try {
+            leaked.get(0).buffer();
+            fail("Accessing the buffer of a closed queue should throw IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readingRecordNeverPointedAtElement_Should_ThrowException() {
+        new OffHeapMostRecentlyInsertedQueue.Record().getInt(0);
+    }
+}
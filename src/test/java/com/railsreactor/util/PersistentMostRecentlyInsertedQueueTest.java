@@ -0,0 +1,110 @@
+package com.railsreactor.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class PersistentMostRecentlyInsertedQueueTest {
+    private static final int SLOT_SIZE = 12 + Long.BYTES;
+
+    private static final RecordCodec<Long> LONG_CODEC = new RecordCodec<Long>() {
+        @Override
+        public int recordSize() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long element, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, element);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenedQueue_Should_ContainTheSameElements() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 3, LONG_CODEC)) {
+            for (long i = 1; i <= 5; i++)
+                queue.offer(i);
+            queue.poll();
+        }
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 3, LONG_CODEC)) {
+            assertArrayEquals(new Object[]{4L, 5L}, queue.toArray());
+
+            queue.offer(6L);
+            queue.offer(7L);
+            assertArrayEquals(new Object[]{5L, 6L, 7L}, queue.toArray());
+        }
+    }
+
+    @Test
+    public void recovery_Should_DropTornRecordAtTheTail() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 4, LONG_CODEC)) {
+            queue.offer(1L);
+            queue.offer(2L);
+            queue.offer(3L);
+        }
+
+        // damage the payload of the record offered at position 2
+        overwriteLong(file, PersistentMostRecentlyInsertedQueue.HEADER_SIZE + 2 * SLOT_SIZE + 12, 42L);
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 4, LONG_CODEC)) {
+            assertArrayEquals(new Object[]{1L, 2L}, queue.toArray());
+        }
+    }
+
+    @Test
+    public void recovery_Should_RestoreRecordWrittenBeforeHeaderUpdate() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 3, LONG_CODEC)) {
+            queue.offer(1L);
+            queue.offer(2L);
+            queue.offer(3L);
+            queue.offer(4L);
+        }
+
+        // roll the header back to the state before the last offer: head 0, tail 3
+        overwriteLong(file, 16, 0L);
+        overwriteLong(file, 24, 3L);
+
+        try (PersistentMostRecentlyInsertedQueue<Long> queue = new PersistentMostRecentlyInsertedQueue<>(file, 3, LONG_CODEC)) {
+            assertArrayEquals(new Object[]{2L, 3L, 4L}, queue.toArray());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reopeningWithDifferentCapacity_Should_ThrowException() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("queue.dat");
+        new PersistentMostRecentlyInsertedQueue<>(file, 3, LONG_CODEC).close();
+
+        new PersistentMostRecentlyInsertedQueue<>(file, 5, LONG_CODEC);
+    }
+
+    private static void overwriteLong(Path file, long offset, long value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES);
+            bytes.putLong(0, value);
+            channel.write(bytes, offset);
+        }
+    }
+}
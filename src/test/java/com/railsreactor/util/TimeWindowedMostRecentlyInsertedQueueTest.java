@@ -0,0 +1,80 @@
+package com.railsreactor.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimeWindowedMostRecentlyInsertedQueueTest {
+    private long now;
+    private List<Integer> discarded;
+    private TimeWindowedMostRecentlyInsertedQueue<Integer> queue;
+
+    @Before
+    public void setup() {
+        discarded = new ArrayList<>();
+        queue = new TimeWindowedMostRecentlyInsertedQueue<>(3, 10, TimeUnit.NANOSECONDS, () -> now, discarded::add);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroMaxAge_Should_ThrowException() {
+        new TimeWindowedMostRecentlyInsertedQueue<Integer>(3, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void elementsOlderThanMaxAge_Should_Expire() {
+        queue.offer(1);
+        now = 5;
+        queue.offer(2);
+        now = 10;
+
+        assertEquals(1, queue.size());
+        assertEquals(2, (int) queue.peek());
+        assertEquals(1, queue.expirationCount());
+
+        now = 15;
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(Arrays.asList(1, 2), discarded);
+    }
+
+    @Test
+    public void offerToFullQueue_Should_EvictTheOldestElement() {
+        for (int i = 1; i <= 4; i++)
+            queue.offer(i);
+
+        assertArrayEquals(new Object[]{2, 3, 4}, queue.toArray());
+        assertEquals(1, queue.evictionCount());
+        assertEquals(0, queue.expirationCount());
+        assertEquals(Arrays.asList(1), discarded);
+    }
+
+    @Test
+    public void offer_Should_DiscardExpiredElements_BeforeEvictingLiveOnes() {
+        queue.offer(1);
+        queue.offer(2);
+        now = 5;
+        queue.offer(3);
+        now = 10;
+        queue.offer(4);
+
+        assertArrayEquals(new Object[]{3, 4}, queue.toArray());
+        assertEquals(0, queue.evictionCount());
+        assertEquals(2, queue.expirationCount());
+    }
+
+    @Test
+    public void removeObject_Should_RemoveElement() {
+        queue.offer(1);
+        queue.offer(2);
+
+        queue.remove(1);
+
+        assertArrayEquals(new Object[]{2}, queue.toArray());
+    }
+}
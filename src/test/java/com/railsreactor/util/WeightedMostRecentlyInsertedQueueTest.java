@@ -0,0 +1,78 @@
+package com.railsreactor.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WeightedMostRecentlyInsertedQueueTest {
+    private List<String> evicted;
+    private WeightedMostRecentlyInsertedQueue<String> queue;
+
+    @Before
+    public void setup() {
+        evicted = new ArrayList<>();
+        queue = new WeightedMostRecentlyInsertedQueue<>(10, String::length, evicted::add);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroMaxWeight_Should_ThrowException() {
+        new WeightedMostRecentlyInsertedQueue<String>(0, String::length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offerElementHeavierThanMaxWeight_Should_ThrowException() {
+        queue.offer("eleven char");
+    }
+
+    @Test
+    public void offer_Should_EvictOldestElements_UntilWeightFits() {
+        queue.offer("aaa");
+        queue.offer("bbb");
+        queue.offer("ccc");
+        assertEquals(9, queue.weight());
+
+        queue.offer("dddddd");
+
+        assertArrayEquals(new Object[]{"ccc", "dddddd"}, queue.toArray());
+        assertEquals(9, queue.weight());
+        assertEquals(2, queue.evictionCount());
+        assertEquals(Arrays.asList("aaa", "bbb"), evicted);
+    }
+
+    @Test
+    public void queue_Should_Grow_WhenElementsAreLight() {
+        WeightedMostRecentlyInsertedQueue<String> queue = new WeightedMostRecentlyInsertedQueue<>(100, String::length);
+        for (int i = 0; i < 150; i++)
+            queue.offer((i % 2 == 0) ? "" : "x");
+
+        assertEquals(75, queue.weight());
+        assertEquals(150, queue.size());
+        assertEquals("", queue.poll());
+        assertEquals(75, queue.weight());
+    }
+
+    @Test
+    public void pollAndRemove_Should_SubtractWeight() {
+        queue.offer("aa");
+        queue.offer("bbb");
+        queue.offer("cccc");
+
+        assertEquals("aa", queue.poll());
+        assertEquals(7, queue.weight());
+
+        Iterator<String> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(4, queue.weight());
+        assertArrayEquals(new Object[]{"cccc"}, queue.toArray());
+
+        queue.clear();
+        assertEquals(0, queue.weight());
+    }
+}
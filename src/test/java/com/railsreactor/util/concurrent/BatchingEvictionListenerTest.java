@@ -0,0 +1,112 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchingEvictionListenerTest {
+
+    @Test
+    public void evictedElements_Should_BeDeliveredInBatchesOfAtMostMaxSize() {
+        List<Runnable> scheduled = new ArrayList<>();
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchingEvictionListener<Integer> listener = new BatchingEvictionListener<>(batches::add, scheduled::add, 2);
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(1, listener);
+
+        for (int i = 1; i <= 6; i++)
+            queue.offer(i);
+
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), batches);
+    }
+
+    @Test
+    public void allEvictedElements_Should_BeDelivered_FromExecutorThreads() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Integer> delivered = new CopyOnWriteArrayList<>();
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(10,
+                new BatchingEvictionListener<Integer>(delivered::addAll, executor, 64));
+
+        for (int i = 0; i < 10_010; i++)
+            queue.offer(i);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(10_000, delivered.size());
+        assertEquals(10_000, queue.evictionCount());
+        assertEquals(9_999, (int) delivered.get(9_999));
+    }
+
+    @Test
+    public void rejectedDelivery_Should_NotFailTheOffer_AndBeRetriedOnTheNextEviction() {
+        List<Runnable> scheduled = new ArrayList<>();
+        boolean[] rejecting = {true};
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchingEvictionListener<Integer> listener = new BatchingEvictionListener<>(batches::add, task -> {
+            if (rejecting[0])
+                throw new RejectedExecutionException();
+            scheduled.add(task);
+        }, 10);
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(1, listener);
+
+        queue.offer(1);
+        queue.offer(2);
+        rejecting[0] = false;
+        queue.offer(3);
+
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+        assertArrayEquals(new Object[]{3}, queue.toArray());
+    }
+
+    @Test
+    public void failingConsumer_Should_NotStrandTheRemainingElements() {
+        List<Runnable> scheduled = new ArrayList<>();
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchingEvictionListener<Integer> listener = new BatchingEvictionListener<>(batch -> {
+            batches.add(batch);
+            if (batches.size() == 1)
+                throw new IllegalStateException();
+        }, scheduled::add, 2);
+
+        for (int i = 1; i <= 5; i++)
+            listener.onEviction(i);
+
+        try {
+            scheduled.get(0).run();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(2, scheduled.size());
+        }
+        scheduled.get(1).run();
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), batches);
+    }
+
+    @Test
+    public void boundedListener_Should_DropTheOldestPendingElements() {
+        List<Runnable> scheduled = new ArrayList<>();
+        List<Integer> delivered = new ArrayList<>();
+        BatchingEvictionListener<Integer> listener = new BatchingEvictionListener<>(delivered::addAll, scheduled::add, 10, 3);
+
+        for (int i = 1; i <= 5; i++)
+            listener.onEviction(i);
+        scheduled.get(0).run();
+
+        assertEquals(Arrays.asList(3, 4, 5), delivered);
+        assertEquals(2, listener.droppedCount());
+    }
+}
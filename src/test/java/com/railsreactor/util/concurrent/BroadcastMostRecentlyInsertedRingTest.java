@@ -0,0 +1,100 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BroadcastMostRecentlyInsertedRingTest {
+    private final BroadcastMostRecentlyInsertedRing<Integer> ring = new BroadcastMostRecentlyInsertedRing<>(4);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingRingWithZeroCapacity_Should_ThrowException() {
+        new BroadcastMostRecentlyInsertedRing<Integer>(0);
+    }
+
+    @Test
+    public void everyCursor_Should_ReadEveryElement() {
+        BroadcastMostRecentlyInsertedRing<Integer>.Cursor first = ring.newCursor();
+        BroadcastMostRecentlyInsertedRing<Integer>.Cursor second = ring.newCursor();
+        ring.offer(1);
+        ring.offer(2);
+
+        assertEquals(1, (int) first.poll());
+        assertEquals(1, (int) second.peek());
+        assertEquals(1, (int) second.poll());
+        assertEquals(2, (int) second.poll());
+        assertNull(second.poll());
+        assertEquals(2, (int) first.poll());
+        assertEquals(0, first.missedCount());
+    }
+
+    @Test
+    public void laggingCursor_Should_SkipToOldestElement_AndCountMissedElements() {
+        BroadcastMostRecentlyInsertedRing<Integer>.Cursor cursor = ring.newCursor();
+        for (int i = 1; i <= 10; i++)
+            ring.offer(i);
+
+        assertEquals(10, cursor.lag());
+        List<Integer> read = new ArrayList<>();
+        cursor.drainTo(read, Integer.MAX_VALUE);
+
+        assertEquals(Arrays.asList(7, 8, 9, 10), read);
+        assertEquals(6, cursor.missedCount());
+        assertEquals(0, cursor.lag());
+    }
+
+    @Test
+    public void newCursor_Should_StartAtOldestElement_AndNewCursorAtTail_AfterNewestOne() {
+        for (int i = 1; i <= 6; i++)
+            ring.offer(i);
+
+        assertEquals(3, (int) ring.newCursor().poll());
+        BroadcastMostRecentlyInsertedRing<Integer>.Cursor atTail = ring.newCursorAtTail();
+        assertNull(atTail.poll());
+
+        ring.offer(7);
+        assertEquals(7, (int) atTail.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers_Should_NeverWait_AndReadersSeeEachProducerInOrder() throws InterruptedException {
+        final int producerCount = 4;
+        final int elementsPerProducer = 100_000;
+        BroadcastMostRecentlyInsertedRing<Integer> ring = new BroadcastMostRecentlyInsertedRing<>(64);
+        BroadcastMostRecentlyInsertedRing<Integer>.Cursor cursor = ring.newCursor();
+        AtomicBoolean orderViolated = new AtomicBoolean();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int base = p * elementsPerProducer;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < elementsPerProducer; i++)
+                    ring.offer(base + i);
+            }));
+        }
+        producers.forEach(Thread::start);
+
+        int[] lastSeen = new int[producerCount];
+        Arrays.fill(lastSeen, -1);
+        long readCount = 0;
+        while (producers.stream().anyMatch(Thread::isAlive) || cursor.lag() > 0) {
+            Integer element = cursor.poll();
+            if (element == null)
+                continue;
+
+            readCount++;
+            int producer = element / elementsPerProducer;
+            if (element <= lastSeen[producer])
+                orderViolated.set(true);
+            lastSeen[producer] = element;
+        }
+
+        assertFalse(orderViolated.get());
+        assertEquals(producerCount * elementsPerProducer, readCount + cursor.missedCount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentDoubleMostRecentlyInsertedQueueTest {
+    private ConcurrentDoubleMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new ConcurrentDoubleMostRecentlyInsertedQueue(3);
+        queue.offerDouble(1.5);
+        queue.offerDouble(2.5);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offerDouble(3.5);
+        queue.offerDouble(4.5);
+        queue.offerDouble(5.5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new double[]{3.5, 4.5, 5.5}, queue.toArray(), 0.0);
+        assertEquals(13.5, queue.stream().sum(), 0.0);
+        assertEquals(3.5, queue.peekDouble(), 0.0);
+    }
+
+    @Test
+    public void pollDouble_Should_RemoveElementsFromHead() {
+        assertEquals(1.5, queue.pollDouble(), 0.0);
+        assertEquals(2.5, queue.pollDouble(), 0.0);
+        assertEquals(-1.0, queue.pollDouble(-1.0), 0.0);
+        assertEquals(-1.0, queue.peekDouble(-1.0), 0.0);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void peekDoubleOfEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.peekDouble();
+    }
+
+    @Test
+    public void iterator_Should_ReturnElementsFromHeadToTail_AfterWrappingAround() {
+        for (int i = 3; i <= 7; i++)
+            queue.offerDouble(i + 0.5);
+
+        PrimitiveIterator.OfDouble iterator = queue.iterator();
+        assertEquals(5.5, iterator.nextDouble(), 0.0);
+        assertEquals(6.5, iterator.nextDouble(), 0.0);
+        assertEquals(7.5, iterator.nextDouble(), 0.0);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void contains_Should_CompareElementsLikeDoubleEquals() {
+        queue.offerDouble(Double.NaN);
+        queue.offerDouble(0.0);
+
+        assertTrue(queue.contains(Double.NaN));
+        assertTrue(queue.contains(0.0));
+        assertFalse(queue.contains(-0.0));
+        assertFalse(queue.contains(1.5));
+    }
+}
@@ -0,0 +1,111 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentIntMostRecentlyInsertedQueueTest {
+    private ConcurrentIntMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new ConcurrentIntMostRecentlyInsertedQueue(3);
+        queue.offerInt(1);
+        queue.offerInt(2);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offerInt(3);
+        queue.offerInt(4);
+        queue.offerInt(5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new int[]{3, 4, 5}, queue.toArray());
+        assertEquals(3, queue.peekInt());
+        assertTrue(queue.contains(5));
+        assertFalse(queue.contains(2));
+    }
+
+    @Test
+    public void pollInt_Should_RemoveElementsFromHead() {
+        assertEquals(1, queue.pollInt());
+        assertEquals(2, queue.pollInt());
+        assertEquals(-1, queue.pollInt(-1));
+        assertEquals(-1, queue.peekInt(-1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pollIntFromEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.pollInt();
+    }
+
+    @Test
+    public void iteratorAndStream_Should_ReturnElementsFromHeadToTail_AfterWrappingAround() {
+        for (int i = 3; i <= 7; i++)
+            queue.offerInt(i);
+
+        PrimitiveIterator.OfInt iterator = queue.iterator();
+        assertEquals(5, iterator.nextInt());
+        assertEquals(6, iterator.nextInt());
+        assertEquals(7, iterator.nextInt());
+        assertFalse(iterator.hasNext());
+        assertEquals(18, queue.stream().sum());
+        assertEquals(5, queue.pollInt());
+        assertEquals(6, queue.peekInt());
+    }
+
+    @Test
+    public void iterator_Should_NotThrowException_IfQueueIsModified() {
+        PrimitiveIterator.OfInt iterator = queue.iterator();
+        queue.offerInt(3);
+        queue.offerInt(4);
+
+        assertEquals(1, iterator.nextInt());
+        assertEquals(2, iterator.nextInt());
+        assertEquals(3, iterator.nextInt());
+        assertEquals(4, iterator.nextInt());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers_Should_NotReorderElements() throws InterruptedException {
+        final ConcurrentIntMostRecentlyInsertedQueue queue = new ConcurrentIntMostRecentlyInsertedQueue(16);
+        final AtomicBoolean producerDone = new AtomicBoolean();
+        final AtomicBoolean orderViolated = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1_000_000; i++)
+                queue.offerInt(i);
+            producerDone.set(true);
+        });
+        Thread evictingProducer = new Thread(() -> {
+            while (!producerDone.get())
+                queue.offerInt(-1);
+        });
+
+        producer.start();
+        evictingProducer.start();
+
+        int last = -1;
+        while (!producerDone.get() || !queue.isEmpty()) {
+            int element = queue.pollInt(-1);
+            if (element >= 0) {
+                if (element <= last)
+                    orderViolated.set(true);
+                last = element;
+            }
+        }
+        producer.join();
+        evictingProducer.join();
+
+        assertFalse(orderViolated.get());
+    }
+}
@@ -0,0 +1,40 @@
+package com.railsreactor.util.concurrent;
+
+import com.railsreactor.util.LongWindowStatistics;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLongAggregatingMostRecentlyInsertedQueueTest {
+
+    @Test(timeout = 10_000)
+    public void statistics_Should_BeConsistent_WhileProducerOffers() throws InterruptedException {
+        ConcurrentLongAggregatingMostRecentlyInsertedQueue queue = new ConcurrentLongAggregatingMostRecentlyInsertedQueue(64);
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            for (long i = 1; i <= 1_000_000; i++)
+                queue.offerLong(i);
+            done.set(true);
+        });
+        producer.start();
+
+        while (!done.get()) {
+            // the window always holds consecutive numbers, so its aggregates determine each other
+            LongWindowStatistics statistics = queue.statistics();
+            if (statistics.count() == 0)
+                continue;
+
+            assertEquals(statistics.count() - 1, statistics.max() - statistics.min());
+            assertEquals((statistics.min() + statistics.max()) * statistics.count() / 2, statistics.sum());
+        }
+        producer.join();
+
+        LongWindowStatistics statistics = queue.statistics();
+        assertEquals(64, statistics.count());
+        assertEquals(1_000_000, statistics.max());
+        assertEquals((64 * 64 - 1) / 12.0, statistics.variance(), 1e-6);
+    }
+}
@@ -0,0 +1,96 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLongMostRecentlyInsertedQueueTest {
+    private ConcurrentLongMostRecentlyInsertedQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new ConcurrentLongMostRecentlyInsertedQueue(3);
+        queue.offerLong(1);
+        queue.offerLong(2);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offerLong(3);
+        queue.offerLong(4);
+        queue.offerLong(5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new long[]{3, 4, 5}, queue.toArray());
+        assertEquals(3, queue.peekLong());
+        assertTrue(queue.contains(5));
+        assertFalse(queue.contains(2));
+    }
+
+    @Test
+    public void pollLong_Should_RemoveElementsFromHead() {
+        assertEquals(1, queue.pollLong());
+        assertEquals(2, queue.pollLong());
+        assertEquals(-1, queue.pollLong(-1));
+        assertEquals(-1, queue.peekLong(-1));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pollLongFromEmptyQueue_Should_ThrowException() {
+        queue.clear();
+        queue.pollLong();
+    }
+
+    @Test
+    public void iterator_Should_NotThrowException_IfQueueIsModified() {
+        PrimitiveIterator.OfLong iterator = queue.iterator();
+        queue.offerLong(3);
+        queue.offerLong(4);
+
+        assertEquals(1, iterator.nextLong());
+        assertEquals(2, iterator.nextLong());
+        assertEquals(3, iterator.nextLong());
+        assertEquals(4, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers_Should_NotReorderElements() throws InterruptedException {
+        final ConcurrentLongMostRecentlyInsertedQueue queue = new ConcurrentLongMostRecentlyInsertedQueue(16);
+        final AtomicBoolean producerDone = new AtomicBoolean();
+        final AtomicBoolean orderViolated = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < 1_000_000; i++)
+                queue.offerLong(i);
+            producerDone.set(true);
+        });
+        Thread evictingProducer = new Thread(() -> {
+            while (!producerDone.get())
+                queue.offerLong(-1);
+        });
+
+        producer.start();
+        evictingProducer.start();
+
+        long last = -1;
+        while (!producerDone.get() || !queue.isEmpty()) {
+            long element = queue.pollLong(-1);
+            if (element >= 0) {
+                if (element <= last)
+                    orderViolated.set(true);
+                last = element;
+            }
+        }
+        producer.join();
+        evictingProducer.join();
+
+        assertFalse(orderViolated.get());
+    }
+}
@@ -0,0 +1,439 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentMostRecentlyInsertedQueueTest {
+    private Queue<Integer> queue;
+
+    @Before
+    public void setup() {
+        queue = new ConcurrentMostRecentlyInsertedQueue<>(3);
+        queue.offer(1);
+        queue.offer(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithZeroCapacity_Should_ThrowException() {
+        new ConcurrentMostRecentlyInsertedQueue<Integer>(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offerNullValue_Should_ThrowException() {
+        queue.offer(null);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offer(3);
+        queue.offer(4);
+        queue.offer(5);
+
+        assertEquals(3, queue.size());
+        assertArrayEquals(new Object[]{3, 4, 5}, queue.toArray());
+        assertEquals(3, (int) queue.peek());
+    }
+
+    @Test
+    public void offerToFullQueue_Should_ReportEvictedElements_ButNotRemovedOnes() {
+        List<Integer> evicted = new ArrayList<>();
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(2, evicted::add);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        queue.remove(2);
+        queue.offer(4);
+
+        assertArrayEquals(new Object[]{3, 4}, queue.toArray());
+        assertEquals(Arrays.asList(1), evicted);
+        assertEquals(1, queue.evictionCount());
+
+        queue.offer(5);
+
+        assertEquals(Arrays.asList(1, 3), evicted);
+        assertEquals(2, queue.evictionCount());
+    }
+
+    @Test
+    public void queueWithCapacityOfOne_Should_KeepOnlyTheLastElement() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(1);
+        queue.offer(1);
+        queue.offer(2);
+
+        assertEquals(1, queue.size());
+        assertEquals(2, (int) queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void poll_Should_RemoveElementsFromHead_AndReturnNull_WhenQueueIsEmpty() {
+        assertEquals(1, (int) queue.poll());
+        assertEquals(2, (int) queue.poll());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void removeObject_Should_RemoveElementFromTheMiddle() {
+        queue.offer(3);
+
+        assertTrue(queue.remove(2));
+        assertFalse(queue.contains(2));
+        assertEquals(2, queue.size());
+        assertArrayEquals(new Object[]{1, 3}, queue.toArray());
+
+        queue.offer(4);
+
+        assertArrayEquals(new Object[]{1, 3, 4}, queue.toArray());
+        assertEquals(0, ((ConcurrentMostRecentlyInsertedQueue<Integer>) queue).evictionCount());
+
+        queue.offer(5);
+
+        assertArrayEquals(new Object[]{3, 4, 5}, queue.toArray());
+        assertEquals(3, (int) queue.poll());
+    }
+
+    @Test
+    public void offerAfterRemovalFromTheMiddle_Should_FillTheFreedCapacity_WithoutEviction() {
+        List<Integer> evicted = new ArrayList<>();
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(3, evicted::add);
+        queue.addAll(Arrays.asList(1, 2, 3));
+        queue.remove(2);
+
+        queue.offer(4);
+
+        assertArrayEquals(new Object[]{1, 3, 4}, queue.toArray());
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.evictionCount());
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void offerAllAfterRemovals_Should_FillTheFreedCapacity_WithoutEviction() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(4);
+        queue.addAll(Arrays.asList(1, 2, 3, 4));
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        queue.remove(3);
+
+        queue.offerAll(new Integer[]{5, 6});
+
+        assertArrayEquals(new Object[]{1, 4, 5, 6}, queue.toArray());
+        assertEquals(0, queue.evictionCount());
+    }
+
+    @Test
+    public void removeHeavyChurn_Should_NotEvictElements_WhileTheQueueIsBelowCapacity() {
+        List<Integer> evicted = new ArrayList<>();
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(3, evicted::add);
+        queue.offer(0);
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+            assertTrue(queue.remove(i));
+        }
+        queue.offer(6);
+
+        assertArrayEquals(new Object[]{0, 6}, queue.toArray());
+        assertTrue(evicted.isEmpty());
+
+        for (int i = 7; i < 100_000; i++) {
+            queue.offer(i);
+            assertTrue(queue.remove(i));
+        }
+
+        assertArrayEquals(new Object[]{0, 6}, queue.toArray());
+        assertTrue(evicted.isEmpty());
+        assertEquals(0, queue.evictionCount());
+        assertEquals(0, (int) queue.poll());
+        assertEquals(6, (int) queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void chunksWithHolesOnly_Should_BeUnlinked_SoThatRemovalsDoNotGrowTheQueue() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(2);
+        queue.offer(-1);
+        for (int i = 0; i < 100_000; i++) {
+            queue.offer(i);
+            queue.remove(i);
+        }
+
+        // the chunk of the live element, the chunk being filled and at most one left by a race
+        assertTrue(queue.linkedChunkCount() <= 3);
+        assertTrue(queue.contains(-1));
+        assertFalse(queue.contains(99_999));
+        assertEquals(1, queue.size());
+
+        queue.offer(1);
+        queue.offer(2);
+        assertArrayEquals(new Object[]{1, 2}, queue.toArray());
+        assertEquals(1, queue.evictionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentRemoveHeavyChurn_Should_NotEvictElements_WhileTheQueueIsBelowCapacity()
+            throws InterruptedException {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(8);
+        queue.offer(-1);
+        AtomicBoolean failed = new AtomicBoolean();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t * 1_000_000;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < first + 200_000; i++) {
+                    queue.offer(i);
+                    if (!queue.remove(i))
+                        failed.set(true);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertFalse(failed.get());
+        assertEquals(0, queue.evictionCount());
+        assertArrayEquals(new Object[]{-1}, queue.toArray());
+        assertEquals(-1, (int) queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void peek_Should_SkipRemovedElements_AtTheHead() {
+        assertTrue(queue.remove(1));
+
+        assertEquals(2, (int) queue.peek());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void iterator_Should_NotThrowException_IfQueueIsModified() {
+        Iterator<Integer> iterator = queue.iterator();
+        queue.offer(3);
+        queue.offer(4);
+
+        List<Integer> actual = new ArrayList<>();
+        while (iterator.hasNext())
+            actual.add(iterator.next());
+
+        // the head element had already been read ahead when the iterator was created
+        assertEquals(Arrays.asList(1, 2, 3, 4), actual);
+    }
+
+    @Test
+    public void iteratorRemove_Should_RemoveElementReturnedByNext() {
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertArrayEquals(new Object[]{2}, queue.toArray());
+    }
+
+    @Test
+    public void spliterator_Should_ReportConcurrentCharacteristics() {
+        Spliterator<Integer> spliterator = queue.spliterator();
+
+        assertTrue(spliterator.hasCharacteristics(Spliterator.CONCURRENT));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+    }
+
+    @Test
+    public void splitSpliterators_Should_CoverAllElementsInOrder() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(100);
+        for (int i = 0; i < 150; i++)
+            queue.offer(i);
+        queue.remove(75);
+
+        Spliterator<Integer> second = queue.spliterator();
+        Spliterator<Integer> first = second.trySplit();
+        List<Integer> actual = new ArrayList<>();
+        first.forEachRemaining(actual::add);
+        second.forEachRemaining(actual::add);
+
+        List<Integer> expected = IntStream.range(50, 150).filter(i -> i != 75).boxed().collect(Collectors.toList());
+        assertEquals(expected, actual);
+        assertEquals(expected, queue.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void spliterator_Should_SkipElementsEvictedDuringTraversal() {
+        Spliterator<Integer> spliterator = queue.spliterator();
+        assertTrue(spliterator.tryAdvance(element -> assertEquals(1, (int) element)));
+
+        for (int i = 3; i <= 6; i++)
+            queue.offer(i);
+
+        List<Integer> actual = new ArrayList<>();
+        spliterator.forEachRemaining(actual::add);
+
+        // the range was bound to the elements present at the first traversal
+        assertEquals(Arrays.asList(), actual);
+        assertEquals(Arrays.asList(4, 5, 6), queue.stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void offerAll_Should_EvictOldestElements_AndKeepOnlyTheLastCapacityElements() {
+        List<Integer> evicted = new ArrayList<>();
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(3, evicted::add);
+        queue.offer(1);
+        queue.offer(2);
+
+        queue.offerAll(new Integer[]{3, 4});
+        assertArrayEquals(new Object[]{2, 3, 4}, queue.toArray());
+
+        queue.addAll(Arrays.asList(5, 6, 7, 8));
+        assertArrayEquals(new Object[]{6, 7, 8}, queue.toArray());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), evicted);
+        assertEquals(5, queue.evictionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers_Should_NotReorderOrDuplicateElements()
+            throws InterruptedException {
+        final int producerCount = 4;
+        final int elementsPerProducer = 100_000;
+        final ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(64);
+        final Set<Integer> consumed = new HashSet<>();
+        final AtomicBoolean producersDone = new AtomicBoolean();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean orderViolated = new AtomicBoolean();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            final int base = p * elementsPerProducer;
+            producers.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < elementsPerProducer; i++)
+                    queue.offer(base + i);
+            }));
+        }
+
+        Thread consumer = new Thread(() -> {
+            int[] lastSeen = new int[producerCount];
+            Arrays.fill(lastSeen, -1);
+            awaitQuietly(start);
+            while (!producersDone.get() || !queue.isEmpty()) {
+                Integer element = queue.poll();
+                if (element != null) {
+                    int producer = element / elementsPerProducer;
+                    if (element <= lastSeen[producer] || !consumed.add(element))
+                        orderViolated.set(true);
+                    lastSeen[producer] = element;
+                }
+            }
+        });
+
+        producers.forEach(Thread::start);
+        consumer.start();
+        start.countDown();
+
+        for (Thread producer : producers)
+            producer.join();
+        producersDone.set(true);
+        consumer.join();
+
+        assertFalse(orderViolated.get());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void setCapacity_Should_ReturnTheOldestElements_WhenShrinking() {
+        List<Integer> evicted = new ArrayList<>();
+        ConcurrentMostRecentlyInsertedQueue<Integer> resizableQueue =
+                new ConcurrentMostRecentlyInsertedQueue<>(5, evicted::add);
+        resizableQueue.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+
+        assertEquals(Arrays.asList(3, 4, 5), resizableQueue.setCapacity(2));
+        resizableQueue.offer(8);
+
+        assertArrayEquals(new Object[]{7, 8}, resizableQueue.toArray());
+        assertEquals(Arrays.asList(1, 2, 6), evicted);
+        assertEquals(3, resizableQueue.evictionCount());
+    }
+
+    @Test
+    public void setCapacity_Should_KeepMoreElements_WhenGrowing() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> resizableQueue = new ConcurrentMostRecentlyInsertedQueue<>(2);
+        resizableQueue.addAll(Arrays.asList(1, 2, 3));
+
+        assertTrue(resizableQueue.setCapacity(5000).isEmpty());
+        for (int i = 4; i <= 6000; i++)
+            resizableQueue.offer(i);
+
+        assertEquals(5000, resizableQueue.size());
+        assertEquals(1001, (int) resizableQueue.peek());
+        assertEquals(1000, resizableQueue.evictionCount());
+    }
+
+    @Test
+    public void blockingQueue_Should_GrowBeyondItsInitialCapacity() {
+        MostRecentlyInsertedBlockingQueue<Integer> blockingQueue = new MostRecentlyInsertedBlockingQueue<>(3);
+        blockingQueue.addAll(Arrays.asList(1, 2, 3));
+
+        blockingQueue.setCapacity(10);
+        blockingQueue.addAll(Arrays.asList(4, 5));
+
+        assertArrayEquals(new Object[]{1, 2, 3, 4, 5}, blockingQueue.toArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setCapacityToZero_Should_ThrowException() {
+        new ConcurrentMostRecentlyInsertedQueue<Integer>(2).setCapacity(0);
+    }
+
+    @Test(timeout = 10_000)
+    public void setCapacity_Should_NotLoseElements_WhileProducersOffer() throws InterruptedException {
+        AtomicInteger evictedCount = new AtomicInteger();
+        ConcurrentMostRecentlyInsertedQueue<Integer> resizableQueue =
+                new ConcurrentMostRecentlyInsertedQueue<>(64, element -> evictedCount.incrementAndGet());
+        int producerCount = 4;
+        int offersPerProducer = 200_000;
+        CountDownLatch producersDone = new CountDownLatch(producerCount);
+
+        for (int producer = 0; producer < producerCount; producer++)
+            new Thread(() -> {
+                for (int i = 0; i < offersPerProducer; i++)
+                    resizableQueue.offer(i);
+                producersDone.countDown();
+            }).start();
+
+        int returnedCount = 0;
+        for (int i = 0; producersDone.getCount() > 0; i++)
+            returnedCount += resizableQueue.setCapacity((i % 2 == 0) ? 1024 : 16).size();
+        producersDone.await();
+        returnedCount += resizableQueue.setCapacity(16).size();
+
+        assertEquals(16, resizableQueue.size());
+        assertEquals(producerCount * offersPerProducer, resizableQueue.size() + evictedCount.get() + returnedCount);
+    }
+}
@@ -0,0 +1,82 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTimeWindowedMostRecentlyInsertedQueueTest {
+    private final AtomicLong now = new AtomicLong();
+    private List<Integer> discarded;
+    private ConcurrentTimeWindowedMostRecentlyInsertedQueue<Integer> queue;
+
+    @Before
+    public void setup() {
+        discarded = new ArrayList<>();
+        queue = new ConcurrentTimeWindowedMostRecentlyInsertedQueue<>(3, 10, TimeUnit.NANOSECONDS, now::get,
+                discarded::add);
+    }
+
+    @Test
+    public void elementsOlderThanMaxAge_Should_Expire() {
+        queue.offer(1);
+        now.set(5);
+        queue.offer(2);
+        now.set(10);
+
+        assertEquals(1, queue.size());
+        assertEquals(2, (int) queue.peek());
+        assertEquals(Arrays.asList(2), queue.stream().collect(Collectors.toList()));
+        assertEquals(1, queue.expirationCount());
+        assertEquals(Arrays.asList(1), discarded);
+    }
+
+    @Test
+    public void poll_Should_DiscardExpiredElements() {
+        queue.offer(1);
+        queue.offer(2);
+        now.set(10);
+
+        assertNull(queue.poll());
+        assertEquals(2, queue.expirationCount());
+        assertEquals(Arrays.asList(1, 2), discarded);
+    }
+
+    @Test
+    public void offerToFullQueue_Should_EvictTheOldestElement() {
+        for (int i = 1; i <= 4; i++)
+            queue.offer(i);
+
+        assertArrayEquals(new Object[]{2, 3, 4}, queue.toArray());
+        assertEquals(1, queue.evictionCount());
+        assertEquals(Arrays.asList(1), discarded);
+    }
+
+    @Test(timeout = 5000)
+    public void blockingTake_Should_WaitForLiveElement() throws InterruptedException {
+        TimeWindowedMostRecentlyInsertedBlockingQueue<Integer> queue =
+                new TimeWindowedMostRecentlyInsertedBlockingQueue<>(3, 10, TimeUnit.NANOSECONDS, now::get, null);
+        queue.offer(1);
+        now.set(10);
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            queue.put(2);
+        }).start();
+
+        assertEquals(2, (int) queue.take());
+        assertEquals(1, queue.expirationCount());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,53 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentWeightedMostRecentlyInsertedQueueTest {
+
+    @Test
+    public void offer_Should_EvictOldestElements_UntilWeightFits() {
+        ConcurrentWeightedMostRecentlyInsertedQueue<String> queue =
+                new ConcurrentWeightedMostRecentlyInsertedQueue<>(10, String::length);
+        queue.offer("aaa");
+        queue.offer("bbb");
+        queue.offer("ccc");
+        queue.offer("dddddd");
+
+        assertArrayEquals(new Object[]{"ccc", "dddddd"}, queue.toArray());
+        assertEquals(9, queue.weight());
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.evictionCount());
+
+        assertTrue(queue.remove("ccc"));
+        assertEquals(6, queue.weight());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentProducers_Should_KeepWeightWithinMaximum() throws InterruptedException {
+        ConcurrentWeightedMostRecentlyInsertedQueue<String> queue =
+                new ConcurrentWeightedMostRecentlyInsertedQueue<>(1000, String::length);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 100_000; i++)
+                    queue.offer((i % 3 == 0) ? "xxxxxxx" : "x");
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers)
+            producer.join();
+
+        long actualWeight = 0;
+        for (String element : queue)
+            actualWeight += element.length();
+
+        assertEquals(actualWeight, queue.weight());
+        assertTrue(queue.weight() <= 1000);
+    }
+}
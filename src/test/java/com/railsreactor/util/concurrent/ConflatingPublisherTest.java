@@ -0,0 +1,204 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ConflatingPublisherTest {
+    private final ConflatingPublisher<Integer> publisher = new ConflatingPublisher<>(Runnable::run, 3, 2);
+
+    @Test
+    public void subscriberWithoutDemand_Should_ReceiveOnlyTheMostRecentItems() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        for (int i = 1; i <= 10; i++)
+            publisher.submit(i);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList(8, 9, 10), subscriber.items);
+    }
+
+    @Test
+    public void subscriber_Should_ReceiveNoMoreItemsThanRequested() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        for (int i = 1; i <= 4; i++)
+            publisher.submit(i);
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.items);
+    }
+
+    @Test
+    public void subscribersRunningAtDifferentSpeeds_Should_NotAffectEachOther() {
+        RecordingSubscriber fast = new RecordingSubscriber();
+        RecordingSubscriber slow = new RecordingSubscriber();
+        publisher.subscribe(fast);
+        publisher.subscribe(slow);
+        fast.subscription.request(Long.MAX_VALUE);
+
+        for (int i = 1; i <= 5; i++)
+            publisher.submit(i);
+        slow.subscription.request(1);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), fast.items);
+        assertEquals(Arrays.asList(3), slow.items);
+    }
+
+    @Test
+    public void close_Should_CompleteSubscribers_AfterTheirBufferedItems() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.submit(1);
+        publisher.close();
+
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(5);
+
+        assertEquals(Arrays.asList(1), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void submitAfterClose_Should_ThrowException() {
+        publisher.close();
+        publisher.submit(1);
+    }
+
+    @Test
+    public void closeExceptionally_Should_SignalErrorToSubscribers() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.submit(1);
+        IllegalStateException error = new IllegalStateException();
+
+        publisher.closeExceptionally(error);
+
+        assertSame(error, subscriber.error);
+        assertTrue(subscriber.items.isEmpty());
+    }
+
+    @Test
+    public void requestOfNonPositiveCount_Should_SignalError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test(timeout = 10000)
+    public void subscriberWithUnboundedDemand_Should_ReceiveAllItemsInOrder_OnExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ConflatingPublisher<Integer> publisher = new ConflatingPublisher<>(executor, 100_000, 64);
+            CountDownLatch completed = new CountDownLatch(1);
+            RecordingSubscriber subscriber = new RecordingSubscriber() {
+                @Override
+                public void onSubscribe(ConflatingPublisher.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onComplete() {
+                    super.onComplete();
+                    completed.countDown();
+                }
+            };
+            publisher.subscribe(subscriber);
+
+            for (int i = 0; i < 50_000; i++)
+                publisher.submit(i);
+            publisher.close();
+
+            assertTrue(completed.await(5, TimeUnit.SECONDS));
+            assertEquals(IntStream.range(0, 50_000).boxed().collect(Collectors.toList()), subscriber.items);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectedDelivery_Should_BeScheduledAgain_ByTheNextSubmit() {
+        AtomicBoolean rejecting = new AtomicBoolean();
+        ConflatingPublisher<Integer> publisher = new ConflatingPublisher<>(task -> {
+            if (rejecting.get())
+                throw new RejectedExecutionException();
+            task.run();
+        }, 3, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        rejecting.set(true);
+        subscriber.subscription.request(2);
+        publisher.submit(1);
+        assertTrue(subscriber.items.isEmpty());
+
+        rejecting.set(false);
+        publisher.submit(2);
+
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+    }
+
+    @Test
+    public void subscribe_Should_ThrowException_AndNotSubscribe_WhenTheExecutorRejects() {
+        ConflatingPublisher<Integer> publisher = new ConflatingPublisher<>(task -> {
+            throw new RejectedExecutionException();
+        }, 3, 2);
+
+        try {
+            publisher.subscribe(new RecordingSubscriber());
+            fail("subscribe should throw RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    private static class RecordingSubscriber implements ConflatingPublisher.Subscriber<Integer> {
+        private final List<Integer> items = new ArrayList<>();
+        private volatile ConflatingPublisher.Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed;
+
+        @Override
+        public void onSubscribe(ConflatingPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
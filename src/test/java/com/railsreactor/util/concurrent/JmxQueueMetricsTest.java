@@ -0,0 +1,98 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class JmxQueueMetricsTest {
+    private final JmxQueueMetrics metrics = new JmxQueueMetrics(1);
+
+    @After
+    public void unregister() {
+        metrics.unregister();
+    }
+
+    @Test
+    public void queue_Should_CountOffersEvictionsAndPolls() {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(2, null, metrics);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offerAll(new Integer[]{3, 4, 5});
+        queue.poll();
+        queue.drainBatch(new ArrayList<>(), 10);
+        queue.poll();
+
+        assertEquals(5, metrics.getOfferCount());
+        assertEquals(3, metrics.getEvictionCount());
+        assertEquals(2, metrics.getPollHitCount());
+        assertEquals(1, metrics.getPollMissCount());
+        assertEquals(2.0 / 3, metrics.getPollHitRatio(), 1e-9);
+
+        metrics.reset();
+        assertEquals(0, metrics.getOfferCount());
+    }
+
+    @Test
+    public void blockingQueue_Should_RecordSampledTakeWaits() throws InterruptedException {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(2, null, metrics);
+
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+
+        assertEquals(1, metrics.getSampledTakeWaitCount());
+        assertTrue(metrics.getTakeWaitMedianNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        // the median is the highest value of its bucket, so it is in the range of the same element
+        assertEquals(1, metrics.getTakeWaitHistogram()[61 - Long.numberOfLeadingZeros(metrics.getTakeWaitMedianNanos())]);
+    }
+
+    @Test
+    public void blockingOperations_Should_RecordASinglePoll_WhateverTheNumberOfAttempts() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(4, null, metrics);
+
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertEquals(0, metrics.getPollHitCount());
+        assertEquals(1, metrics.getPollMissCount());
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            started.countDown();
+            try {
+                queue.take();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        consumer.start();
+        started.await();
+        Thread.sleep(20);
+        queue.offer(1);
+        consumer.join(5000);
+
+        assertEquals(1, metrics.getPollHitCount());
+        assertEquals(1, metrics.getPollMissCount());
+
+        queue.offer(2);
+        queue.offer(3);
+        assertEquals(2, queue.drainTo(new ArrayList<>(), 10, 1, TimeUnit.SECONDS));
+
+        assertEquals(3, metrics.getPollHitCount());
+        assertEquals(1, metrics.getPollMissCount());
+    }
+
+    @Test
+    public void metrics_Should_BeReadableViaJmx() throws Exception {
+        ConcurrentMostRecentlyInsertedQueue<Integer> queue = new ConcurrentMostRecentlyInsertedQueue<>(2, null, metrics);
+        ObjectName name = metrics.register("test queue");
+        queue.offer(1);
+
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "OfferCount"));
+
+        metrics.unregister();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
@@ -0,0 +1,96 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class KeyedMostRecentlyInsertedStoreTest {
+
+    @Test
+    public void recent_Should_ReturnTheMostRecentElementsOfTheKey_InOrder() {
+        KeyedMostRecentlyInsertedStore<String, Integer> store = new KeyedMostRecentlyInsertedStore<>(3);
+        for (int i = 1; i <= 7; i++)
+            store.offer("odd-even".split("-")[i % 2], i);
+
+        assertEquals(Arrays.asList(3, 5, 7), store.recent("even"));
+        assertEquals(Arrays.asList(2, 4, 6), store.recent("odd"));
+        assertEquals(Collections.emptyList(), store.recent("none"));
+        assertEquals(2, store.keyCount());
+        assertEquals(6, store.elementCount());
+    }
+
+    @Test
+    public void recent_Should_KeepOrder_WhenRingGrowsAfterWrappingAround() {
+        KeyedMostRecentlyInsertedStore<String, Integer> store = new KeyedMostRecentlyInsertedStore<>(16);
+        for (int i = 1; i <= 20; i++)
+            store.offer("key", i);
+
+        assertEquals(Arrays.asList(5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20), store.recent("key"));
+    }
+
+    @Test
+    public void boundedStore_Should_DiscardLeastRecentlyUsedKeys() {
+        KeyedMostRecentlyInsertedStore<String, Integer> store = new KeyedMostRecentlyInsertedStore<>(2, 4, 1);
+        store.offer("a", 1);
+        store.offer("b", 2);
+        store.offer("c", 3);
+        store.recent("a");
+        store.offer("c", 4);
+        store.offer("d", 5);
+
+        assertEquals(Collections.emptyList(), store.recent("b"));
+        assertEquals(Arrays.asList(1), store.recent("a"));
+        assertEquals(Arrays.asList(3, 4), store.recent("c"));
+        assertEquals(Arrays.asList(5), store.recent("d"));
+        assertEquals(1, store.evictedKeyCount());
+        assertEquals(4, store.elementCount());
+    }
+
+    @Test
+    public void boundedStore_Should_KeepTheOfferedKey_WhenItAloneExceedsTheBound() {
+        KeyedMostRecentlyInsertedStore<String, Integer> store = new KeyedMostRecentlyInsertedStore<>(5, 2, 1);
+        for (int i = 1; i <= 4; i++)
+            store.offer("key", i);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), store.recent("key"));
+    }
+
+    @Test
+    public void remove_Should_DiscardAllElementsOfTheKey() {
+        KeyedMostRecentlyInsertedStore<String, Integer> store = new KeyedMostRecentlyInsertedStore<>(2);
+        store.offer("key", 1);
+
+        assertTrue(store.remove("key"));
+        assertFalse(store.remove("key"));
+        assertEquals(0, store.elementCount());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void offeringNullElement_Should_ThrowException() {
+        new KeyedMostRecentlyInsertedStore<String, Integer>(2).offer("key", null);
+    }
+
+    @Test
+    public void store_Should_KeepEveryKeysElements_WhenKeysAreOfferedConcurrently() throws InterruptedException {
+        KeyedMostRecentlyInsertedStore<Integer, Integer> store = new KeyedMostRecentlyInsertedStore<>(16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++)
+            executor.execute(() -> {
+                for (int i = 0; i < 100_000; i++)
+                    store.offer(i % 10_000, i);
+            });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(10_000, store.keyCount());
+        assertEquals(160_000, store.elementCount());
+        for (int element : store.recent(42))
+            assertEquals(42, element % 10_000);
+    }
+}
@@ -4,11 +4,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class MostRecentlyInsertedBlockingQueueTest {
     private BlockingQueue<Integer> queue;
@@ -93,8 +101,123 @@ public class MostRecentlyInsertedBlockingQueueTest {
         assertEquals(Integer.MAX_VALUE, queue.remainingCapacity());
     }
 
-    @Test(expected = UnsupportedOperationException.class)
-    public void drainTo_Should_ThrowException() {
-        queue.drainTo(new ArrayList<>());
+    @Test
+    public void drainTo_Should_MoveAllElementsInOrder() {
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        List<Integer> target = new ArrayList<>();
+
+        assertEquals(3, queue.drainTo(target));
+        assertEquals(Arrays.asList(1, 2, 3), target);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void drainToWithMaxElements_Should_MoveNoMoreThanMaxElements() {
+        for (int i = 1; i <= 7; i++)
+            queue.offer(i);
+        List<Integer> target = new ArrayList<>();
+
+        assertEquals(2, queue.drainTo(target, 2));
+        assertEquals(Arrays.asList(3, 4), target);
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void drainTo_Should_SkipRemovedElements() {
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        queue.remove(2);
+        List<Integer> target = new ArrayList<>();
+
+        assertEquals(2, queue.drainTo(target));
+        assertEquals(Arrays.asList(1, 3), target);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void drainToItself_Should_ThrowException() {
+        queue.drainTo(queue);
+    }
+
+    @Test
+    public void drainToWithTimeout_Should_WaitForFirstElement_AndDrainBatch() throws InterruptedException {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(5);
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            queue.offer(1);
+        }).start();
+        List<Integer> target = new ArrayList<>();
+
+        assertEquals(1, queue.drainTo(target, 10, 5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1), target);
+        assertEquals(0, queue.drainTo(target, 10, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void offer_Should_WakeEveryWaitingConsumer_OncePerElement() throws Exception {
+        int consumerCount = 5;
+        ExecutorService executor = Executors.newFixedThreadPool(consumerCount);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < consumerCount; i++)
+                results.add(executor.submit(() -> queue.take()));
+
+            Thread.sleep(200);
+            for (int i = 0; i < consumerCount; i++)
+                queue.put(i);
+
+            Set<Integer> taken = new HashSet<>();
+            for (Future<Integer> result : results)
+                taken.add(result.get());
+
+            assertEquals(consumerCount, taken.size());
+            assertTrue(queue.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void timedOutConsumers_Should_Not_SwallowElements() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> impatient = executor.submit(() -> queue.poll(50, TimeUnit.MILLISECONDS));
+            Future<Integer> patient = executor.submit(() -> queue.poll(5, TimeUnit.SECONDS));
+
+            assertNull(impatient.get());
+            queue.offer(42);
+
+            assertEquals(Integer.valueOf(42), patient.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void offerAll_Should_WakeAsManyWaitingConsumersAsElements() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(5);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                results.add(executor.submit(() -> queue.take()));
+
+            Thread.sleep(200);
+            queue.offerAll(new Integer[]{1, 2, 3});
+
+            Set<Integer> taken = new HashSet<>();
+            for (Future<Integer> result : results)
+                taken.add(result.get());
+
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), taken);
+        } finally {
+            executor.shutdownNow();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load tests with virtual-thread consumers. The sources target Java 8, so the virtual-thread executor
+ * is looked up reflectively and the tests are skipped unless they run on JDK 21+.
+ * Add {@code -DargLine=-Djdk.tracePinnedThreads=full} to the Maven command to report pinned carrier threads.
+ */
+public class MostRecentlyInsertedBlockingQueueVirtualThreadTest {
+    private static final int CONSUMER_COUNT = 100_000;
+
+    @Test(timeout = 120_000)
+    public void take_Should_ServeOneHundredThousandVirtualThreadConsumers() throws Exception {
+        MostRecentlyInsertedBlockingQueue<Integer> queue = new MostRecentlyInsertedBlockingQueue<>(CONSUMER_COUNT);
+        AtomicInteger takenCount = new AtomicInteger();
+        AtomicLong takenSum = new AtomicLong();
+
+        ExecutorService consumers = newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < CONSUMER_COUNT; i++) {
+            consumers.execute(() -> {
+                try {
+                    takenSum.addAndGet(queue.take());
+                    takenCount.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        for (int i = 1; i <= CONSUMER_COUNT; i++)
+            queue.put(i);
+
+        consumers.shutdown();
+        assertTrue(consumers.awaitTermination(100, TimeUnit.SECONDS));
+
+        assertEquals(CONSUMER_COUNT, takenCount.get());
+        assertEquals((long) CONSUMER_COUNT * (CONSUMER_COUNT + 1) / 2, takenSum.get());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Assume.assumeNoException("Virtual threads are not available on this JDK.", e);
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MostRecentlyInsertedQuantileSketchTest {
+
+    @Test
+    public void quantiles_Should_BeExact_ForSmallValues() {
+        MostRecentlyInsertedQuantileSketch sketch = new MostRecentlyInsertedQuantileSketch(100, 7);
+        for (int i = 1; i <= 100; i++)
+            sketch.record(i);
+
+        assertArrayEquals(new long[]{1, 50, 99, 100}, sketch.quantiles(0, 0.5, 0.99, 1));
+    }
+
+    @Test
+    public void quantiles_Should_BeWithinRelativeError_ForLargeValues() {
+        Random random = new Random(42);
+        MostRecentlyInsertedQuantileSketch sketch = new MostRecentlyInsertedQuantileSketch(10_000, 7);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextGaussian() * 2 + 12));
+            sketch.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long estimate = sketch.quantile(quantile);
+
+            assertTrue(estimate >= exact);
+            assertTrue(estimate <= exact + exact / 128);
+        }
+    }
+
+    @Test
+    public void quantiles_Should_ForgetEvictedValues() {
+        MostRecentlyInsertedQuantileSketch sketch = new MostRecentlyInsertedQuantileSketch(100);
+        for (int i = 0; i < 1000; i++)
+            sketch.record(1_000_000);
+        for (int i = 0; i < 100; i++)
+            sketch.record(5);
+
+        assertEquals(100, sketch.size());
+        assertEquals(5, sketch.quantile(1));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void quantileOfClearedSketch_Should_ThrowException() {
+        MostRecentlyInsertedQuantileSketch sketch = new MostRecentlyInsertedQuantileSketch(10);
+        sketch.record(1);
+        sketch.clear();
+
+        sketch.quantile(0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordingNegativeValue_Should_ThrowException() {
+        new MostRecentlyInsertedQuantileSketch(10).record(-1);
+    }
+
+    @Test
+    public void histogram_Should_DescribeTheWindow_AfterConcurrentRecords() throws InterruptedException {
+        MostRecentlyInsertedQuantileSketch sketch = new MostRecentlyInsertedQuantileSketch(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++)
+            executor.execute(() -> {
+                for (int i = 0; i < 100_000; i++)
+                    sketch.record(1_000_000);
+            });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 1000; i++)
+            sketch.record(7);
+
+        assertArrayEquals(new long[]{7, 7}, sketch.quantiles(0, 1));
+    }
+}
@@ -0,0 +1,90 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SingleProducerSingleConsumerMostRecentlyInsertedQueueTest {
+    private SingleProducerSingleConsumerMostRecentlyInsertedQueue<Integer> queue;
+
+    @Before
+    public void setup() {
+        queue = new SingleProducerSingleConsumerMostRecentlyInsertedQueue<>(3);
+        queue.offer(1);
+        queue.offer(2);
+    }
+
+    @Test
+    public void offerMoreElementsThanCapacity_Should_EvictTheOldestElements() {
+        queue.offer(3);
+        queue.offer(4);
+        queue.offer(5);
+
+        assertEquals(3, queue.size());
+        assertEquals(Arrays.asList(3, 4, 5), new ArrayList<>(queue));
+        assertEquals(2, queue.evictionCount());
+        assertEquals(3, (int) queue.peek());
+        assertEquals(3, (int) queue.poll());
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.evictionCount());
+    }
+
+    @Test
+    public void poll_Should_RemoveElementsFromHead_AndReturnNull_WhenQueueIsEmpty() {
+        assertEquals(1, (int) queue.poll());
+        assertEquals(2, (int) queue.poll());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void clear_Should_EmptyQueue() {
+        queue.offer(3);
+        queue.offer(4);
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertEquals(1, queue.evictionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void consumerLappedByProducer_Should_ReceiveElementsInOrder_WithoutDuplicates()
+            throws InterruptedException {
+        final SingleProducerSingleConsumerMostRecentlyInsertedQueue<Integer> queue =
+                new SingleProducerSingleConsumerMostRecentlyInsertedQueue<>(8);
+        final int elementCount = 2_000_000;
+        final AtomicBoolean producerDone = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < elementCount; i++)
+                queue.offer(i);
+            producerDone.set(true);
+        });
+        producer.start();
+
+        long received = 0;
+        int last = -1;
+        boolean orderViolated = false;
+        while (!producerDone.get() || !queue.isEmpty()) {
+            Integer element = queue.poll();
+            if (element != null) {
+                if (element <= last)
+                    orderViolated = true;
+                last = element;
+                received++;
+            }
+        }
+        producer.join();
+
+        assertFalse(orderViolated);
+        assertEquals(elementCount - 1, last);
+        assertEquals(elementCount, received + queue.evictionCount());
+    }
+}
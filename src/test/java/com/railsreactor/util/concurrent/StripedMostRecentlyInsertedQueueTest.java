@@ -0,0 +1,83 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StripedMostRecentlyInsertedQueueTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creatingQueueWithMoreStripesThanCapacity_Should_ThrowException() {
+        new StripedMostRecentlyInsertedQueue<Integer>(2, 3, StripedMostRecentlyInsertedQueue.RecencyOrder.EXACT);
+    }
+
+    @Test
+    public void capacity_Should_BeSplitAcrossStripes() {
+        StripedMostRecentlyInsertedQueue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(10, 4,
+                StripedMostRecentlyInsertedQueue.RecencyOrder.EXACT);
+
+        assertEquals(10, queue.capacity());
+        assertEquals(4, queue.stripeCount());
+    }
+
+    @Test
+    public void elementsOfferedByDifferentThreads_Should_ComeOutInOfferOrder() throws InterruptedException {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(64, 8,
+                StripedMostRecentlyInsertedQueue.RecencyOrder.EXACT);
+
+        for (int i = 0; i < 16; i++) {
+            final int element = i;
+            Thread producer = new Thread(() -> queue.offer(element));
+            producer.start();
+            producer.join();
+        }
+
+        List<Integer> iterated = new ArrayList<>(queue);
+        List<Integer> polled = new ArrayList<>();
+        Integer element;
+        while ((element = queue.poll()) != null)
+            polled.add(element);
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++)
+            expected.add(i);
+
+        assertEquals(expected, iterated);
+        assertEquals(expected, polled);
+    }
+
+    @Test
+    public void stripe_Should_EvictItsOldestElement_WhenFull() {
+        AtomicInteger evicted = new AtomicInteger();
+        StripedMostRecentlyInsertedQueue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(4, 2,
+                StripedMostRecentlyInsertedQueue.RecencyOrder.APPROXIMATE, element -> evicted.incrementAndGet());
+
+        // a single thread always offers to the same stripe of capacity 2
+        for (int i = 1; i <= 5; i++)
+            queue.offer(i);
+
+        assertEquals(Arrays.asList(4, 5), new ArrayList<>(queue));
+        assertEquals(3, evicted.get());
+        assertEquals(3, queue.evictionCount());
+    }
+
+    @Test
+    public void removeObject_Should_RemoveElementFromItsStripe() {
+        Queue<Integer> queue = new StripedMostRecentlyInsertedQueue<>(8, 2,
+                StripedMostRecentlyInsertedQueue.RecencyOrder.EXACT);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+
+        assertTrue(queue.remove(2));
+        assertFalse(queue.contains(2));
+        assertEquals(Arrays.asList(1, 3), new ArrayList<>(queue));
+        assertEquals(1, (int) queue.peek());
+    }
+}
@@ -0,0 +1,68 @@
+package com.railsreactor.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.*;
+
+public class FlowAdaptersTest {
+    private final ConflatingPublisher<Integer> publisher = new ConflatingPublisher<>(Runnable::run, 3, 2);
+
+    @Test
+    public void flowSubscriber_Should_ReceiveTheRequestedItemsAndCompletion() {
+        RecordingFlowSubscriber subscriber = new RecordingFlowSubscriber();
+        Flow.Publisher<Integer> flowPublisher = FlowAdapters.toFlowPublisher(publisher);
+        flowPublisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        for (int i = 1; i <= 4; i++)
+            publisher.submit(i);
+        publisher.close();
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(10);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.items);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void cancel_Should_UnsubscribeFlowSubscriber() {
+        RecordingFlowSubscriber subscriber = new RecordingFlowSubscriber();
+        FlowAdapters.toFlowPublisher(publisher).subscribe(subscriber);
+
+        subscriber.subscription.cancel();
+
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    private static class RecordingFlowSubscriber implements Flow.Subscriber<Integer> {
+        private final List<Integer> items = new ArrayList<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}